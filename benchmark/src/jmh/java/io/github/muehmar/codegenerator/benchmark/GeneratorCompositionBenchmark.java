@@ -0,0 +1,120 @@
+package io.github.muehmar.codegenerator.benchmark;
+
+import static io.github.muehmar.codegenerator.writer.Writer.javaWriter;
+
+import ch.bluecare.commons.data.PList;
+import io.github.muehmar.codegenerator.Generator;
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Steady-state generation of a class with fields, getters and an optional builder using the
+ * combinators of {@link Generator}. Compares the composed generator with the compiled one for the
+ * immutable writer and the builder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorCompositionBenchmark {
+  private static final int FIELDS = 50;
+
+  @Param({"false", "true"})
+  private boolean compiled;
+
+  private Generator<Pojo, Void> generator;
+  private Pojo pojo;
+
+  @Setup
+  public void setup() {
+    final Generator<Field, Void> fieldGen =
+        (field, settings, writer) -> writer.println("private final %s %s;", field.type, field.name);
+    final Generator<Field, Void> getterGen =
+        Generator.<Field, Void>emptyGen()
+            .append(
+                (field, settings, writer) ->
+                    writer.println("public %s get%s() {", field.type, field.name))
+            .append((field, settings, writer) -> writer.println("return %s;", field.name), 1)
+            .append(Generator.constant("}"));
+    final Generator<Pojo, Void> builderGen =
+        Generator.<String, Void>constant("public static final class Builder {")
+            .append(Generator.constant("private Builder() {}"), 1)
+            .append(Generator.constant("}"))
+            .contraMap(pojo -> pojo.name);
+
+    final Generator<Pojo, Void> classGen =
+        Generator.<Pojo, Void>constant("package io.github.muehmar;")
+            .appendNewLine()
+            .append(w -> w.printRefs())
+            .appendSingleBlankLine()
+            .append((pojo, settings, writer) -> writer.println("public class %s {", pojo.name))
+            .append(
+                Generator.<Pojo, Void>emptyGen()
+                    .appendList(fieldGen, pojo -> pojo.fields)
+                    .appendSingleBlankLine()
+                    .appendList(getterGen, pojo -> pojo.fields, Generator.newLine())
+                    .appendConditionally(
+                        Generator.<Pojo, Void>newLine().append(builderGen), pojo -> pojo.builder)
+                    .appendOptional(
+                        Generator.<String, Void>constant("// Generated").appendNewLine(),
+                        pojo -> Optional.of(pojo.name)),
+                1)
+            .append(Generator.constant("}"));
+
+    generator = compiled ? classGen.compile() : classGen;
+    pojo =
+        new Pojo(
+            "Customer",
+            PList.range(0, FIELDS).map(i -> new Field("field" + i, i % 2 == 0 ? "String" : "int")),
+            true);
+  }
+
+  @Benchmark
+  public Writer generateWriter() {
+    return generator.generate(pojo, null, javaWriter());
+  }
+
+  @Benchmark
+  public WriterBuilder generateBuilder() {
+    final WriterBuilder builder = WriterBuilder.javaWriterBuilder();
+    generator.generate(pojo, null, builder);
+    return builder;
+  }
+
+  private static final class Pojo {
+    private final String name;
+    private final PList<Field> fields;
+    private final boolean builder;
+
+    private Pojo(String name, PList<Field> fields, boolean builder) {
+      this.name = name;
+      this.fields = fields;
+      this.builder = builder;
+    }
+  }
+
+  private static final class Field {
+    private final String name;
+    private final String type;
+
+    private Field(String name, String type) {
+      this.name = name;
+      this.type = type;
+    }
+  }
+}
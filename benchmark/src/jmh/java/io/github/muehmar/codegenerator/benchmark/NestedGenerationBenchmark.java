@@ -0,0 +1,63 @@
+package io.github.muehmar.codegenerator.benchmark;
+
+import static io.github.muehmar.codegenerator.writer.Writer.javaWriter;
+
+import ch.bluecare.commons.data.PList;
+import io.github.muehmar.codegenerator.Generator;
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generates nested classes with a fixed number of lines per class. With the total number of lines
+ * fixed, the time should not depend on the nesting depth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NestedGenerationBenchmark {
+  private static final int TOTAL_LINES = 2_000;
+
+  @Param({"1", "5", "20"})
+  private int depth;
+
+  private Generator<Void, Void> generator;
+
+  @Setup
+  public void setup() {
+    final int linesPerClass = TOTAL_LINES / depth;
+    Generator<Void, Void> gen = Generator.emptyGen();
+    for (int level = 0; level < depth; level++) {
+      final Generator<Void, Void> content =
+          Generator.<Void, Void>emptyGen()
+              .appendList(
+                  (Integer index, Void settings, Writer writer) ->
+                      writer.println("private String field%d;", index),
+                  ignore -> PList.range(0, linesPerClass));
+      gen =
+          Generator.<Void, Void>constant("public static class Level%d {", level)
+              .append(content, 1)
+              .append(gen, 1)
+              .append(Generator.constant("}"));
+    }
+    generator = gen;
+  }
+
+  @Benchmark
+  public Writer generate() {
+    return generator.generate(null, null, javaWriter());
+  }
+}
@@ -0,0 +1,52 @@
+package io.github.muehmar.codegenerator.benchmark;
+
+import static io.github.muehmar.codegenerator.writer.Writer.javaWriter;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the rendering of a writer into a string. Run with {@code ./gradlew :benchmark:jmh}, the
+ * gc profiler reports the allocated bytes per rendering.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterAsStringBenchmark {
+  @Param({"100", "10000"})
+  private int lines;
+
+  private Writer writer;
+
+  @Setup
+  public void setup() {
+    Writer w = javaWriter().println("package io.github.muehmar;").println().printRefs().println();
+    w = w.println("public class Benchmark {");
+    for (int i = 0; i < lines; i++) {
+      w = w.tab(1).println("private String field%d;", i).ref("io.github.Ref" + (i % 50));
+      if (i % 10 == 0) {
+        w = w.println().println();
+      }
+    }
+    writer = w.println("}");
+  }
+
+  @Benchmark
+  public String asString() {
+    return writer.asString();
+  }
+}
@@ -0,0 +1,16 @@
+package io.github.muehmar.codegenerator;
+
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+
+/**
+ * Generator which appends its content directly to a mutable {@link WriterBuilder}. It can be turned
+ * into a regular {@link Generator} with {@link Generator#ofBuilder(BuilderGenerator)}.
+ */
+@FunctionalInterface
+public interface BuilderGenerator<A, B> {
+  /**
+   * Appends content to the given {@link WriterBuilder} for the data {@link A} and the settings
+   * {@link B}.
+   */
+  void generate(A data, B settings, WriterBuilder builder);
+}
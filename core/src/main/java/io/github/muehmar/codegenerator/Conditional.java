@@ -0,0 +1,37 @@
+package io.github.muehmar.codegenerator;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+import java.util.function.BiPredicate;
+
+/** {@link Generator} executing a generator only if the predicate holds true. */
+final class Conditional<A, B> implements Generator<A, B> {
+  private final Generator<A, B> gen;
+  private final BiPredicate<A, B> predicate;
+
+  Conditional(Generator<A, B> gen, BiPredicate<A, B> predicate) {
+    this.gen = gen;
+    this.predicate = predicate;
+  }
+
+  @Override
+  public Writer generate(A data, B settings, Writer writer) {
+    return predicate.test(data, settings) ? gen.generate(data, settings, writer) : writer;
+  }
+
+  @Override
+  public void generate(A data, B settings, WriterBuilder builder) {
+    if (predicate.test(data, settings)) {
+      gen.generate(data, settings, builder);
+    }
+  }
+
+  @Override
+  public Generator<A, B> compile() {
+    final Generator<A, B> compiledGen = gen.compile();
+    if (compiledGen instanceof Empty) {
+      return compiledGen;
+    }
+    return new Conditional<>(compiledGen, predicate);
+  }
+}
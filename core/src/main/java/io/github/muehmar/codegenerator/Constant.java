@@ -0,0 +1,32 @@
+package io.github.muehmar.codegenerator;
+
+import io.github.muehmar.codegenerator.writer.Template;
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+
+/** {@link Generator} printing a formatted line independent of the data and settings. */
+final class Constant<A, B> implements Generator<A, B> {
+  private final Template template;
+  private final Object[] args;
+
+  Constant(Template template, Object[] args) {
+    this.template = template;
+    this.args = args;
+  }
+
+  @Override
+  public Writer generate(A data, B settings, Writer writer) {
+    return writer.println(template, args);
+  }
+
+  @Override
+  public void generate(A data, B settings, WriterBuilder builder) {
+    builder.println(template, args);
+  }
+
+  /** Formats the line once, see {@link Generator#compile()}. */
+  @Override
+  public Generator<A, B> compile() {
+    return Text.ofLine(template.format(args));
+  }
+}
@@ -0,0 +1,42 @@
+package io.github.muehmar.codegenerator;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+
+/**
+ * {@link Generator} with separate implementations for the immutable {@link Writer} and the mutable
+ * {@link WriterBuilder}. Both implementations must produce the same content.
+ */
+final class DualPathGenerator<A, B> implements Generator<A, B> {
+  private final Generator<A, B> writerGen;
+  private final BuilderGenerator<A, B> builderGen;
+
+  private DualPathGenerator(Generator<A, B> writerGen, BuilderGenerator<A, B> builderGen) {
+    this.writerGen = writerGen;
+    this.builderGen = builderGen;
+  }
+
+  static <A, B> Generator<A, B> of(Generator<A, B> writerGen, BuilderGenerator<A, B> builderGen) {
+    return new DualPathGenerator<>(writerGen, builderGen);
+  }
+
+  static <A, B> Generator<A, B> ofBuilder(BuilderGenerator<A, B> builderGen) {
+    final Generator<A, B> writerGen =
+        (data, settings, writer) -> {
+          final WriterBuilder builder = writer.toBuilder();
+          builderGen.generate(data, settings, builder);
+          return builder.toWriter();
+        };
+    return new DualPathGenerator<>(writerGen, builderGen);
+  }
+
+  @Override
+  public Writer generate(A data, B settings, Writer writer) {
+    return writerGen.generate(data, settings, writer);
+  }
+
+  @Override
+  public void generate(A data, B settings, WriterBuilder builder) {
+    builderGen.generate(data, settings, builder);
+  }
+}
@@ -0,0 +1,26 @@
+package io.github.muehmar.codegenerator;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+
+/** {@link Generator} which produces nothing. */
+final class Empty<A, B> implements Generator<A, B> {
+  private static final Empty<?, ?> INSTANCE = new Empty<>();
+
+  private Empty() {}
+
+  @SuppressWarnings("unchecked")
+  static <A, B> Generator<A, B> instance() {
+    return (Generator<A, B>) INSTANCE;
+  }
+
+  @Override
+  public Writer generate(A data, B settings, Writer writer) {
+    return writer;
+  }
+
+  @Override
+  public void generate(A data, B settings, WriterBuilder builder) {
+    // Nothing to generate
+  }
+}
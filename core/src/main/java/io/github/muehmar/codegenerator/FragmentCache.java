@@ -0,0 +1,132 @@
+package io.github.muehmar.codegenerator;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import lombok.Value;
+
+/**
+ * Thread safe cache of rendered {@link Writer} fragments used by {@link
+ * Generator#memoize(BiFunction, FragmentCache)}. The size of the cache is bounded by the total
+ * weight of the fragments, which is the number of characters of the rendered fragment. The least
+ * recently used fragments are evicted in case the maximum weight is exceeded.
+ *
+ * <p>A cache can be shared between generators, the fragments of different generators are stored
+ * with different keys.
+ */
+public final class FragmentCache {
+  /** Default maximum weight, i.e. about 8MB of characters. */
+  public static final long DEFAULT_MAX_WEIGHT = 4L * 1024 * 1024;
+
+  private final long maxWeight;
+  private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private long weight = 0;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  private FragmentCache(long maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Creates a cache whose fragments contain at most {@code maxWeight} characters in total.
+   *
+   * @throws IllegalArgumentException if the maximum weight is negative
+   */
+  public static FragmentCache withMaxWeight(long maxWeight) {
+    if (maxWeight < 0) {
+      throw new IllegalArgumentException("Maximum weight must not be negative: " + maxWeight);
+    }
+    return new FragmentCache(maxWeight);
+  }
+
+  /** Creates a cache with the {@link #DEFAULT_MAX_WEIGHT}. */
+  public static FragmentCache create() {
+    return withMaxWeight(DEFAULT_MAX_WEIGHT);
+  }
+
+  /**
+   * Returns the cached fragment for the key or renders and caches it with the given supplier. The
+   * fragment is rendered without holding a lock, i.e. concurrent calls for the same key may render
+   * the fragment more than once.
+   */
+  Writer get(Object key, Supplier<Writer> render) {
+    final Writer cached = lookup(key);
+    if (cached != null) {
+      hits.increment();
+      return cached;
+    }
+    misses.increment();
+    final Writer fragment = render.get();
+    put(key, fragment, fragment.length());
+    return fragment;
+  }
+
+  private synchronized Writer lookup(Object key) {
+    final Entry entry = entries.get(key);
+    return entry != null ? entry.fragment : null;
+  }
+
+  private synchronized void put(Object key, Writer fragment, int fragmentWeight) {
+    if (fragmentWeight > maxWeight) {
+      return;
+    }
+    final Entry previous = entries.put(key, new Entry(fragment, fragmentWeight));
+    weight += fragmentWeight - (previous != null ? previous.weight : 0);
+
+    final Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+    while (weight > maxWeight) {
+      weight -= leastRecentlyUsed.next().weight;
+      leastRecentlyUsed.remove();
+      evictions.increment();
+    }
+  }
+
+  /** Removes all fragments, the statistics are not reset. */
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  /** Returns a snapshot of the statistics of this cache. */
+  public Stats stats() {
+    final int size;
+    final long currentWeight;
+    synchronized (this) {
+      size = entries.size();
+      currentWeight = weight;
+    }
+    return new Stats(hits.sum(), misses.sum(), evictions.sum(), size, currentWeight, maxWeight);
+  }
+
+  private static final class Entry {
+    private final Writer fragment;
+    private final int weight;
+
+    private Entry(Writer fragment, int weight) {
+      this.fragment = fragment;
+      this.weight = weight;
+    }
+  }
+
+  @Value
+  public static class Stats {
+    long hitCount;
+    long missCount;
+    long evictionCount;
+    int size;
+    long weight;
+    long maxWeight;
+
+    /** Returns the ratio of hits to all requests, one in case there were no requests. */
+    public double hitRate() {
+      final long requests = hitCount + missCount;
+      return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+  }
+}
@@ -0,0 +1,358 @@
+package io.github.muehmar.codegenerator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import ch.bluecare.commons.data.PList;
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.Value;
+
+/**
+ * Records the time and the output of the generators created with {@link Generator#named(String)}.
+ * The spans are aggregated by their stack of names, i.e. by the path of named generators from the
+ * outermost to the innermost one, across all threads while the profiler is started. This allows to
+ * profile a whole batch of generated files.
+ *
+ * <p>The writers allocated during a span are counted with the {@link
+ * GenerationMetrics#writerAllocated()} hook, the profiler therefore installs a {@link
+ * GenerationMetrics} instance while it is started, combined with a previously installed instance.
+ * Metrics installed while the profiler is started replace it and stop the counting of the writers.
+ *
+ * <p>At most one profiler is started at a time. While no profiler is started and no metrics are
+ * installed, a named generator only reads the started profiler and the installed metrics and
+ * delegates directly to its generator.
+ *
+ * <p>The spans of generators executed in parallel for {@link Generator#appendListParallel} are
+ * nested in the span of the enclosing named generator, their time is recorded on the executing
+ * threads. The time the enclosing generator waits for them is not counted as its exclusive time,
+ * the writers and bytes allocated by them are counted in their spans only.
+ *
+ * <p>The recorded spans can be exported as collapsed stacks, which is the input format of flame
+ * graph tools, or as text summary.
+ */
+public final class GenerationProfiler {
+  private static final Object LOCK = new Object();
+  private static volatile GenerationProfiler active;
+
+  private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+  private final ThreadLocal<Frame> currentFrame = new ThreadLocal<>();
+  private final AllocationCounter allocationCounter = AllocationCounter.create();
+  private final GenerationMetrics writerCounter = new WriterCounter();
+
+  /** The metrics installed before this profiler was started, accessed only while locked. */
+  private GenerationMetrics previousMetrics;
+
+  /** The metrics installed by this profiler, accessed only while locked. */
+  private GenerationMetrics installedMetrics;
+
+  private GenerationProfiler() {}
+
+  public static GenerationProfiler create() {
+    return new GenerationProfiler();
+  }
+
+  /** Returns the started profiler or null in case no profiler is started. */
+  static GenerationProfiler active() {
+    return active;
+  }
+
+  /**
+   * Starts recording the named generators executed on any thread.
+   *
+   * @throws IllegalStateException if another profiler is already started
+   */
+  public GenerationProfiler start() {
+    synchronized (LOCK) {
+      if (active != null && active != this) {
+        throw new IllegalStateException("Another profiler is already started");
+      }
+      if (active == null) {
+        previousMetrics = GenerationMetrics.installed();
+        installedMetrics =
+            previousMetrics == null ? writerCounter : previousMetrics.and(writerCounter);
+        GenerationMetrics.install(installedMetrics);
+      }
+      active = this;
+    }
+    return this;
+  }
+
+  /**
+   * Stops recording, spans which are currently executed are still recorded. The previously
+   * installed metrics are installed again in case the metrics were not replaced in the meantime.
+   */
+  public GenerationProfiler stop() {
+    synchronized (LOCK) {
+      if (active == this) {
+        active = null;
+        if (GenerationMetrics.installed() == installedMetrics) {
+          if (previousMetrics == null) {
+            GenerationMetrics.uninstall();
+          } else {
+            GenerationMetrics.install(previousMetrics);
+          }
+        }
+        previousMetrics = null;
+        installedMetrics = null;
+      }
+    }
+    return this;
+  }
+
+  /** Removes all recorded spans. */
+  public void reset() {
+    stats.clear();
+  }
+
+  Frame enter(String name) {
+    final Frame parent = currentFrame.get();
+    final String path = parent == null ? name : parent.path + ";" + name;
+    final Frame frame =
+        new Frame(parent, path, System.nanoTime(), allocationCounter.allocatedBytes());
+    currentFrame.set(frame);
+    return frame;
+  }
+
+  void exit(Frame frame, long lines, long characters) {
+    final long elapsed = System.nanoTime() - frame.start;
+    final long allocated = allocationCounter.allocatedBytes() - frame.startAllocatedBytes;
+    if (frame.parent != null) {
+      frame.parent.childNanos += elapsed;
+      frame.parent.writersAllocated += frame.writersAllocated;
+    }
+    currentFrame.set(frame.parent);
+
+    final Stats span = stats.computeIfAbsent(frame.path, path -> new Stats());
+    span.calls.increment();
+    span.inclusiveNanos.add(elapsed);
+    span.exclusiveNanos.add(elapsed - frame.childNanos);
+    span.lines.add(lines);
+    span.characters.add(characters);
+    span.writersAllocated.add(frame.writersAllocated);
+    span.allocatedBytes.add(allocated);
+  }
+
+  /** Returns the frame of the innermost named generator executed on the current thread. */
+  Frame currentFrame() {
+    return currentFrame.get();
+  }
+
+  /**
+   * Executes the task on the current thread nested in the given frame of another thread. The time
+   * of the spans executed by the task is not added to the frame, the time the other thread waits
+   * for the task is excluded with {@link #excludeWaiting(Frame, long)}.
+   */
+  <T> T executeInFrame(Frame frame, Supplier<T> task) {
+    final Frame previous = currentFrame.get();
+    currentFrame.set(frame == null ? null : new Frame(null, frame.path, frame.start, 0));
+    try {
+      return task.get();
+    } finally {
+      currentFrame.set(previous);
+    }
+  }
+
+  /** Excludes the time the frame waited for tasks on other threads from its exclusive time. */
+  void excludeWaiting(Frame frame, long nanos) {
+    if (frame != null) {
+      frame.childNanos += nanos;
+    }
+  }
+
+  /** Returns the recorded spans sorted by their path. */
+  public PList<Span> spans() {
+    return PList.fromIter(new TreeMap<>(stats).entrySet())
+        .map(entry -> entry.getValue().toSpan(entry.getKey()));
+  }
+
+  /**
+   * Returns the spans as collapsed stacks, i.e. one line per path with the names separated by
+   * semicolons followed by the exclusive time in microseconds.
+   */
+  public String collapsedStacks() {
+    final StringBuilder sb = new StringBuilder();
+    for (Span span : spans()) {
+      sb.append(span.getPath()).append(' ').append(span.getExclusiveNanos() / 1000).append('\n');
+    }
+    return sb.toString();
+  }
+
+  /** Writes the {@link #collapsedStacks()} UTF-8 encoded to the given file. */
+  public void writeCollapsedStacks(Path file) throws IOException {
+    Files.write(file, collapsedStacks().getBytes(UTF_8));
+  }
+
+  /**
+   * Returns a text table with the spans aggregated by the name of the innermost generator, sorted
+   * by the exclusive time. The inclusive time of recursively nested generators with the same name
+   * is counted for every level.
+   */
+  public String summary() {
+    final Map<String, Span> byName = new TreeMap<>();
+    for (Span span : spans()) {
+      byName.merge(span.getName(), span.withPath(span.getName()), Span::add);
+    }
+    final StringBuilder sb =
+        new StringBuilder(
+            String.format(
+                "%-40s %10s %14s %14s %12s %14s %10s %14s%n",
+                "Name",
+                "Calls",
+                "Inclusive ms",
+                "Exclusive ms",
+                "Lines",
+                "Characters",
+                "Writers",
+                "Allocated KB"));
+    PList.fromIter(byName.values())
+        .sort(Comparator.comparingLong(Span::getExclusiveNanos).reversed())
+        .forEach(
+            span ->
+                sb.append(
+                    String.format(
+                        "%-40s %10d %14.3f %14.3f %12d %14d %10d %14d%n",
+                        span.getPath(),
+                        span.getCalls(),
+                        span.getInclusiveNanos() / 1e6,
+                        span.getExclusiveNanos() / 1e6,
+                        span.getLines(),
+                        span.getCharacters(),
+                        span.getWritersAllocated(),
+                        span.getAllocatedBytes() / 1024)));
+    return sb.toString();
+  }
+
+  /** Aggregated values of all executions of named generators with the same path. */
+  @Value
+  public static class Span {
+    String path;
+    long calls;
+    long inclusiveNanos;
+    long exclusiveNanos;
+    long lines;
+    long characters;
+
+    /** Writers, builders and streaming writers allocated by the executing threads. */
+    long writersAllocated;
+
+    /** Allocated bytes of the executing threads, zero if not supported by the JVM. */
+    long allocatedBytes;
+
+    /** Returns the name of the innermost generator of the path. */
+    public String getName() {
+      return path.substring(path.lastIndexOf(';') + 1);
+    }
+
+    private Span withPath(String path) {
+      return new Span(
+          path,
+          calls,
+          inclusiveNanos,
+          exclusiveNanos,
+          lines,
+          characters,
+          writersAllocated,
+          allocatedBytes);
+    }
+
+    private Span add(Span other) {
+      return new Span(
+          path,
+          calls + other.calls,
+          inclusiveNanos + other.inclusiveNanos,
+          exclusiveNanos + other.exclusiveNanos,
+          lines + other.lines,
+          characters + other.characters,
+          writersAllocated + other.writersAllocated,
+          allocatedBytes + other.allocatedBytes);
+    }
+  }
+
+  /** Execution of a named generator on the current thread. */
+  static final class Frame {
+    private final Frame parent;
+    private final String path;
+    private final long start;
+    private final long startAllocatedBytes;
+    private long childNanos;
+    private long writersAllocated;
+
+    private Frame(Frame parent, String path, long start, long startAllocatedBytes) {
+      this.parent = parent;
+      this.path = path;
+      this.start = start;
+      this.startAllocatedBytes = startAllocatedBytes;
+    }
+  }
+
+  private static final class Stats {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder inclusiveNanos = new LongAdder();
+    private final LongAdder exclusiveNanos = new LongAdder();
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder characters = new LongAdder();
+    private final LongAdder writersAllocated = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    private Span toSpan(String path) {
+      return new Span(
+          path,
+          calls.sum(),
+          inclusiveNanos.sum(),
+          exclusiveNanos.sum(),
+          lines.sum(),
+          characters.sum(),
+          writersAllocated.sum(),
+          allocatedBytes.sum());
+    }
+  }
+
+  /** Counts the allocated writers in the frame of the current thread. */
+  private final class WriterCounter implements GenerationMetrics {
+    @Override
+    public void writerAllocated() {
+      final Frame frame = currentFrame.get();
+      if (frame != null) {
+        frame.writersAllocated++;
+      }
+    }
+  }
+
+  /** Allocated bytes of the current thread if supported by the JVM. */
+  private static final class AllocationCounter {
+    private final com.sun.management.ThreadMXBean threadMXBean;
+
+    private AllocationCounter(com.sun.management.ThreadMXBean threadMXBean) {
+      this.threadMXBean = threadMXBean;
+    }
+
+    private static AllocationCounter create() {
+      final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+      if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+        final com.sun.management.ThreadMXBean sunThreadMXBean =
+            (com.sun.management.ThreadMXBean) threadMXBean;
+        if (sunThreadMXBean.isThreadAllocatedMemorySupported()
+            && sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+          return new AllocationCounter(sunThreadMXBean);
+        }
+      }
+      return new AllocationCounter(null);
+    }
+
+    private long allocatedBytes() {
+      return threadMXBean == null
+          ? 0
+          : threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+  }
+}
@@ -1,7 +1,8 @@
 package io.github.muehmar.codegenerator;
 
-import ch.bluecare.commons.data.PList;
+import io.github.muehmar.codegenerator.writer.Template;
 import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
 import java.util.Optional;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
@@ -10,21 +11,54 @@ import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
 
 public interface Generator<A, B> {
+  /** Minimum number of elements for which {@link #appendListParallel} generates in parallel. */
+  int DEFAULT_PARALLEL_THRESHOLD = 32;
+
   /**
    * Appends content to the given {@link Writer} for the data {@link A} and the settings {@link B}
    * by returning a new immutable instance of {@link Writer} containing the new content.
    */
   Writer generate(A data, B settings, Writer writer);
 
+  /**
+   * Appends content to the given mutable {@link WriterBuilder} for the data {@link A} and the
+   * settings {@link B}. The produced content is the same as for an immutable {@link Writer}.
+   *
+   * <p>The default implementation applies {@link #generate(Object, Object, Writer)} to the content
+   * of the builder. The generators created by the factory methods and combinators of this interface
+   * append directly to the builder.
+   */
+  default void generate(A data, B settings, WriterBuilder builder) {
+    builder.apply(writer -> generate(data, settings, writer));
+  }
+
+  /**
+   * Returns an optimized {@link Generator} producing the same content as this generator. Composed
+   * generators are flattened into a single sequence, empty generators are removed and the text of
+   * {@link #constant(String, Object...)} generators is formatted once and fused with adjacent
+   * constant output. Generators created from lambdas are returned unchanged.
+   *
+   * <p>Compiling is meant for generators which are executed many times, the returned generator
+   * should be reused.
+   */
+  default Generator<A, B> compile() {
+    return this;
+  }
+
   static <A, B> Generator<A, B> of(Generator<A, B> gen) {
     return gen;
   }
 
+  /** Creates a new {@link Generator} which appends its content directly to a builder. */
+  static <A, B> Generator<A, B> ofBuilder(BuilderGenerator<A, B> gen) {
+    return DualPathGenerator.ofBuilder(gen);
+  }
+
   /**
    * Creates a new {@link Generator} producing a formatted string using the format and arguments.
    */
   static <A, B> Generator<A, B> constant(String format, Object... args) {
-    return (data, settings, writer) -> writer.println(String.format(format, args));
+    return new Constant<>(Template.of(format), args);
   }
 
   /** Creates a new {@link Generator} by applying the given function on the {@link Writer}. */
@@ -34,12 +68,12 @@ public interface Generator<A, B> {
 
   /** Creates a new {@link Generator} which produces nothing. */
   static <A, B> Generator<A, B> emptyGen() {
-    return (data, settings, writer) -> writer;
+    return Empty.instance();
   }
 
   /** Creates a new {@link Generator} which produces a new line. */
   static <A, B> Generator<A, B> newLine() {
-    return (data, settings, writer) -> writer.println();
+    return Text.newLine();
   }
 
   /**
@@ -47,12 +81,15 @@ public interface Generator<A, B> {
    * line, nothing wil get appended.
    */
   default Generator<A, B> appendSingleBlankLine() {
-    return append(Writer::printSingleBlankLine);
+    return append(
+        DualPathGenerator.of(
+            (data, settings, writer) -> writer.printSingleBlankLine(),
+            (data, settings, builder) -> builder.printSingleBlankLine()));
   }
 
   /** Returns a new {@link Generator} which appends a new line to {@code this}. */
   default Generator<A, B> appendNewLine() {
-    return append((UnaryOperator<Writer>) Writer::println);
+    return append(Generator.newLine());
   }
 
   /** Returns a new {@link Generator} which prepends a new line to {@code this}. */
@@ -70,11 +107,7 @@ public interface Generator<A, B> {
    * {@code next} to the content of {@code this}.
    */
   default Generator<A, B> append(Generator<A, B> next) {
-    final Generator<A, B> self = this;
-    return (data, settings, writer) -> {
-      final Writer selfWriter = self.generate(data, settings, writer);
-      return next.generate(data, settings, selfWriter);
-    };
+    return Sequence.of(this, next);
   }
 
   /**
@@ -82,11 +115,10 @@ public interface Generator<A, B> {
    * {@code next} to the content of {@code this}, where the next generator has no settings.
    */
   default Generator<A, B> appendNoSettings(Generator<A, Void> next) {
-    final Generator<A, B> self = this;
-    return (data, settings, writer) -> {
-      final Writer selfWriter = self.generate(data, settings, writer);
-      return next.generate(data, (Void) null, selfWriter);
-    };
+    return append(
+        DualPathGenerator.of(
+            (data, settings, writer) -> next.generate(data, (Void) null, writer),
+            (data, settings, builder) -> next.generate(data, (Void) null, builder)));
   }
 
   /**
@@ -94,12 +126,15 @@ public interface Generator<A, B> {
    * {@code next} to the content of {@code this} intended with the given number of tabs.
    */
   default Generator<A, B> append(Generator<A, B> next, int tabs) {
-    final Generator<A, B> self = this;
-    return (data, settings, writer) -> {
-      final Writer selfWriter = self.generate(data, settings, writer);
-      final Writer nextWriter = next.generate(data, settings, writer.empty());
-      return selfWriter.append(tabs, nextWriter);
-    };
+    return append(
+        DualPathGenerator.of(
+            (data, settings, writer) ->
+                writer.append(tabs, next.generate(data, settings, writer.empty())),
+            (data, settings, builder) -> {
+              final WriterBuilder nextBuilder = builder.empty();
+              next.generate(data, settings, nextBuilder);
+              builder.append(tabs, nextBuilder.toWriter());
+            }));
   }
 
   /**
@@ -116,11 +151,10 @@ public interface Generator<A, B> {
    * function {@code f} for the next generator.
    */
   default <C> Generator<A, B> append(Generator<C, B> gen, Function<A, ? extends C> f) {
-    final Generator<A, B> self = this;
-    return (data, settings, writer) -> {
-      final Writer selfWriter = self.generate(data, settings, writer);
-      return gen.generate(f.apply(data), settings, selfWriter);
-    };
+    return append(
+        DualPathGenerator.of(
+            (data, settings, writer) -> gen.generate(f.apply(data), settings, writer),
+            (data, settings, builder) -> gen.generate(f.apply(data), settings, builder)));
   }
 
   /**
@@ -129,11 +163,11 @@ public interface Generator<A, B> {
    * function {@code f} for the next generator.
    */
   default <C> Generator<A, B> append(Generator<C, B> gen, BiFunction<A, B, ? extends C> f) {
-    final Generator<A, B> self = this;
-    return (data, settings, writer) -> {
-      final Writer selfWriter = self.generate(data, settings, writer);
-      return gen.generate(f.apply(data, settings), settings, selfWriter);
-    };
+    return append(
+        DualPathGenerator.of(
+            (data, settings, writer) -> gen.generate(f.apply(data, settings), settings, writer),
+            (data, settings, builder) ->
+                gen.generate(f.apply(data, settings), settings, builder)));
   }
 
   /**
@@ -159,15 +193,66 @@ public interface Generator<A, B> {
    */
   default <C> Generator<A, B> appendList(
       Generator<C, B> next, Function<A, ? extends Iterable<C>> f, Generator<A, B> separator) {
-    final Generator<A, B> self = this;
-    return (data, settings, writer) -> {
-      final Writer selfWriter = self.generate(data, settings, writer);
-      return PList.fromIter(f.apply(data))
-          .<UnaryOperator<Writer>>map(e -> w -> next.generate(e, settings, w))
-          .reduce((f1, f2) -> w -> f2.apply(separator.generate(data, settings, f1.apply(w))))
-          .map(f1 -> f1.apply(selfWriter))
-          .orElse(selfWriter);
-    };
+    return append(
+        DualPathGenerator.of(
+            (data, settings, writer) -> {
+              Writer current = writer;
+              boolean first = true;
+              for (C element : f.apply(data)) {
+                if (!first) {
+                  current = separator.generate(data, settings, current);
+                }
+                current = next.generate(element, settings, current);
+                first = false;
+              }
+              return current;
+            },
+            (data, settings, builder) -> {
+              boolean first = true;
+              for (C element : f.apply(data)) {
+                if (!first) {
+                  separator.generate(data, settings, builder);
+                }
+                next.generate(element, settings, builder);
+                first = false;
+              }
+            }));
+  }
+
+  /**
+   * Returns a new {@link Generator} which will append the content of the given {@link Generator}
+   * {@code next} for every element returned by the given function {@code f} like {@link
+   * #appendList(Generator, Function)}, but generates the content of the elements in parallel in
+   * case there are at least {@link #DEFAULT_PARALLEL_THRESHOLD} elements.
+   *
+   * @see #appendListParallel(Generator, Function, Generator, int)
+   */
+  default <C> Generator<A, B> appendListParallel(
+      Generator<C, B> next, Function<A, ? extends Iterable<C>> f) {
+    return appendListParallel(next, f, Generator.emptyGen(), DEFAULT_PARALLEL_THRESHOLD);
+  }
+
+  /**
+   * Returns a new {@link Generator} which will append the content of the given {@link Generator}
+   * {@code next} for every element returned by the given function {@code f}, separated by the
+   * content of the {@code separator} generator. The content of the elements is generated in
+   * parallel in case there are at least {@code threshold} elements, the separators are generated
+   * sequentially.
+   *
+   * <p>The first element is generated sequentially, the content of the other elements is
+   * generated into writers created with {@link Writer#startFragment()} after the first separator
+   * and merged with {@link Writer#continueWith(Writer, Writer)} in the order of the elements. The
+   * output is the same as the output of {@link #appendList(Generator, Function, Generator)}, an
+   * element whose fragment cannot be merged, e.g. because the separator leaves the writer in a
+   * different state, is generated again sequentially. The element generator must be safe to
+   * execute concurrently and must not inspect the content before the element.
+   */
+  default <C> Generator<A, B> appendListParallel(
+      Generator<C, B> next,
+      Function<A, ? extends Iterable<C>> f,
+      Generator<A, B> separator,
+      int threshold) {
+    return append(new ParallelListNode<>(next, f, separator, threshold));
   }
 
   /**
@@ -176,11 +261,12 @@ public interface Generator<A, B> {
    * non-empty {@link Optional}.
    */
   default <C> Generator<A, B> appendOptional(Generator<C, B> next, Function<A, Optional<C>> f) {
-    final Generator<A, B> self = this;
-    return (data, settings, writer) -> {
-      final Writer selfWriter = self.generate(data, settings, writer);
-      return f.apply(data).map(c -> next.generate(c, settings, selfWriter)).orElse(selfWriter);
-    };
+    return append(
+        DualPathGenerator.of(
+            (data, settings, writer) ->
+                f.apply(data).map(c -> next.generate(c, settings, writer)).orElse(writer),
+            (data, settings, builder) ->
+                f.apply(data).ifPresent(c -> next.generate(c, settings, builder))));
   }
 
   /**
@@ -188,13 +274,7 @@ public interface Generator<A, B> {
    * {@code next} to the content of {@code this} only if the given {@link Predicate} holds true;
    */
   default Generator<A, B> appendConditionally(Generator<A, B> append, BiPredicate<A, B> predicate) {
-    final Generator<A, B> self = this;
-    return (data, settings, writer) -> {
-      if (predicate.negate().test(data, settings)) {
-        return self.generate(data, settings, writer);
-      }
-      return append(append).generate(data, settings, writer);
-    };
+    return append(append.filter(predicate));
   }
 
   /**
@@ -210,8 +290,7 @@ public interface Generator<A, B> {
    * applied.
    */
   default <C> Generator<C, B> contraMap(Function<C, A> f) {
-    final Generator<A, B> self = this;
-    return (data, settings, writer) -> self.generate(f.apply(data), settings, writer);
+    return new Mapped<>(this, f);
   }
 
   /**
@@ -219,13 +298,7 @@ public interface Generator<A, B> {
    * generator is an empty generator.
    */
   default Generator<A, B> filter(BiPredicate<A, B> predicate) {
-    final Generator<A, B> self = this;
-    return ((data, settings, writer) -> {
-      if (predicate.test(data, settings)) {
-        return self.generate(data, settings, writer);
-      }
-      return writer;
-    });
+    return new Conditional<>(this, predicate);
   }
 
   /**
@@ -235,4 +308,53 @@ public interface Generator<A, B> {
   default Generator<A, B> filter(Predicate<A> predicate) {
     return filter((data, settings) -> predicate.test(data));
   }
+
+  /**
+   * Returns a new {@link Generator} with the given name which produces the same content as {@code
+   * this}. The executions of named generators are recorded by a started {@link
+   * GenerationProfiler}, nested named generators are recorded with the names of the enclosing
+   * generators.
+   */
+  default Generator<A, B> named(String name) {
+    return new Named<>(this, name);
+  }
+
+  /**
+   * Returns a new {@link Generator} which renders the content of {@code this} only once for every
+   * key returned by the given function and reuses the rendered content including the refs for the
+   * same key. The fragments are stored in a new {@link FragmentCache} with the default maximum
+   * weight.
+   *
+   * @see #memoize(BiFunction, FragmentCache)
+   */
+  default Generator<A, B> memoize(Function<A, ?> key) {
+    return memoize(key, FragmentCache.create());
+  }
+
+  /**
+   * Returns a new {@link Generator} which renders the content of {@code this} only once for every
+   * key returned by the given function and reuses the rendered content including the refs for the
+   * same key. The fragments are stored in the given {@link FragmentCache}.
+   *
+   * @see #memoize(BiFunction, FragmentCache)
+   */
+  default Generator<A, B> memoize(Function<A, ?> key, FragmentCache cache) {
+    return memoize((data, settings) -> key.apply(data), cache);
+  }
+
+  /**
+   * Returns a new {@link Generator} which renders the content of {@code this} only once for every
+   * key returned by the given function and reuses the rendered content including the refs for the
+   * same key. The fragments are stored in the given {@link FragmentCache}.
+   *
+   * <p>The key must identify everything which influences the content, i.e. the relevant parts of
+   * the data and the settings. The settings of the {@link Writer} are considered automatically. In
+   * case the function returns null, the content is not cached.
+   *
+   * <p>The content is generated into an empty writer and appended on a new line like {@link
+   * #indent(int)} with zero tabs, i.e. it does not continue a line started by a previous generator.
+   */
+  default Generator<A, B> memoize(BiFunction<A, B, ?> key, FragmentCache cache) {
+    return new Memoized<>(this, key, cache);
+  }
 }
@@ -0,0 +1,47 @@
+package io.github.muehmar.codegenerator;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+import java.util.function.Function;
+
+/** {@link Generator} transforming the input data before executing a generator. */
+final class Mapped<C, A, B> implements Generator<C, B> {
+  private final Generator<A, B> gen;
+  private final Function<C, A> f;
+
+  Mapped(Generator<A, B> gen, Function<C, A> f) {
+    this.gen = gen;
+    this.f = f;
+  }
+
+  @Override
+  public Writer generate(C data, B settings, Writer writer) {
+    return gen.generate(f.apply(data), settings, writer);
+  }
+
+  @Override
+  public void generate(C data, B settings, WriterBuilder builder) {
+    gen.generate(f.apply(data), settings, builder);
+  }
+
+  /**
+   * Compiles the mapped generator. Generators which do not use the data are returned without the
+   * mapping and consecutive mappings are fused into one function.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public Generator<C, B> compile() {
+    final Generator<A, B> compiledGen = gen.compile();
+    if (compiledGen instanceof Empty || compiledGen instanceof Text) {
+      return (Generator<C, B>) (Generator<?, B>) compiledGen;
+    }
+    if (compiledGen instanceof Mapped) {
+      return fuse((Mapped<A, ?, B>) compiledGen);
+    }
+    return new Mapped<>(compiledGen, f);
+  }
+
+  private <D> Generator<C, B> fuse(Mapped<A, D, B> inner) {
+    return new Mapped<>(inner.gen, f.andThen(inner.f));
+  }
+}
@@ -0,0 +1,104 @@
+package io.github.muehmar.codegenerator;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+import io.github.muehmar.codegenerator.writer.WriterSettings;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+/**
+ * {@link Generator} appending the content of a generator which is rendered once per key and stored
+ * in a {@link FragmentCache}. The content is generated into an empty writer and appended like
+ * {@link Indent} with zero tabs.
+ */
+final class Memoized<A, B> implements Generator<A, B> {
+  private final Generator<A, B> gen;
+  private final BiFunction<A, B, ?> keyFunction;
+  private final FragmentCache cache;
+
+  /** Identity of this generator in the cache, shared with the compiled generator. */
+  private final Object identity;
+
+  Memoized(Generator<A, B> gen, BiFunction<A, B, ?> keyFunction, FragmentCache cache) {
+    this(gen, keyFunction, cache, new Object());
+  }
+
+  private Memoized(
+      Generator<A, B> gen, BiFunction<A, B, ?> keyFunction, FragmentCache cache, Object identity) {
+    this.gen = gen;
+    this.keyFunction = keyFunction;
+    this.cache = cache;
+    this.identity = identity;
+  }
+
+  @Override
+  public Writer generate(A data, B settings, Writer writer) {
+    final Object key = keyFunction.apply(data, settings);
+    if (key == null) {
+      return writer.append(gen.generate(data, settings, writer.empty()));
+    }
+    final Writer fragment =
+        cache.get(
+            new CacheKey(identity, key, writer.getSettings()),
+            () -> gen.generate(data, settings, writer.empty()));
+    return writer.append(fragment);
+  }
+
+  @Override
+  public void generate(A data, B settings, WriterBuilder builder) {
+    final Object key = keyFunction.apply(data, settings);
+    final Writer fragment =
+        key == null
+            ? render(data, settings, builder)
+            : cache.get(
+                new CacheKey(identity, key, builder.getSettings()),
+                () -> render(data, settings, builder));
+    builder.append(fragment);
+  }
+
+  private Writer render(A data, B settings, WriterBuilder builder) {
+    final WriterBuilder genBuilder = builder.empty();
+    gen.generate(data, settings, genBuilder);
+    return genBuilder.toWriter();
+  }
+
+  @Override
+  public Generator<A, B> compile() {
+    return new Memoized<>(gen.compile(), keyFunction, cache, identity);
+  }
+
+  /**
+   * Key of a fragment in the cache. The generator is compared by identity, the settings of the
+   * writer are part of the key as they influence the rendered fragment.
+   */
+  private static final class CacheKey {
+    private final Object identity;
+    private final Object key;
+    private final WriterSettings writerSettings;
+
+    private CacheKey(Object identity, Object key, WriterSettings writerSettings) {
+      this.identity = identity;
+      this.key = key;
+      this.writerSettings = writerSettings;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CacheKey)) {
+        return false;
+      }
+      final CacheKey other = (CacheKey) o;
+      return identity == other.identity
+          && key.equals(other.key)
+          && Objects.equals(writerSettings, other.writerSettings);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(identity), key, writerSettings);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package io.github.muehmar.codegenerator;
+
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics;
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics.Operation;
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+
+/**
+ * {@link Generator} recording the execution of a generator as span in the started {@link
+ * GenerationProfiler} and reporting it with the added lines, characters and refs to the installed
+ * {@link GenerationMetrics}. Without a started profiler and installed metrics, the generator is
+ * executed directly.
+ */
+final class Named<A, B> implements Generator<A, B> {
+  private final Generator<A, B> gen;
+  private final String name;
+
+  Named(Generator<A, B> gen, String name) {
+    this.gen = gen;
+    this.name = name;
+  }
+
+  @Override
+  public Writer generate(A data, B settings, Writer writer) {
+    final GenerationProfiler profiler = GenerationProfiler.active();
+    final GenerationMetrics metrics = GenerationMetrics.installed();
+    if (profiler == null && metrics == null) {
+      return gen.generate(data, settings, writer);
+    }
+    final int firstLine = Math.max(0, writer.lineCount() - 1);
+    final long charactersBefore = writer.characterCount(firstLine);
+    final int refsBefore = writer.refCount();
+    final Object context = metrics != null ? metrics.begin(Operation.GENERATE) : null;
+    final long start = System.nanoTime();
+    final GenerationProfiler.Frame frame = profiler != null ? profiler.enter(name) : null;
+    Writer result = writer;
+    try {
+      result = gen.generate(data, settings, writer);
+      return result;
+    } finally {
+      report(
+          profiler,
+          frame,
+          metrics,
+          context,
+          start,
+          result.lineCount() - writer.lineCount(),
+          result.characterCount(firstLine) - charactersBefore,
+          result.refCount() - refsBefore);
+    }
+  }
+
+  @Override
+  public void generate(A data, B settings, WriterBuilder builder) {
+    final GenerationProfiler profiler = GenerationProfiler.active();
+    final GenerationMetrics metrics = GenerationMetrics.installed();
+    if (profiler == null && metrics == null) {
+      gen.generate(data, settings, builder);
+      return;
+    }
+    final int linesBefore = builder.lineCount();
+    final int firstLine = Math.max(0, linesBefore - 1);
+    final long charactersBefore = builder.characterCount(firstLine);
+    final int refsBefore = builder.refCount();
+    final Object context = metrics != null ? metrics.begin(Operation.GENERATE) : null;
+    final long start = System.nanoTime();
+    final GenerationProfiler.Frame frame = profiler != null ? profiler.enter(name) : null;
+    try {
+      gen.generate(data, settings, builder);
+    } finally {
+      report(
+          profiler,
+          frame,
+          metrics,
+          context,
+          start,
+          builder.lineCount() - linesBefore,
+          builder.characterCount(firstLine) - charactersBefore,
+          builder.refCount() - refsBefore);
+    }
+  }
+
+  private void report(
+      GenerationProfiler profiler,
+      GenerationProfiler.Frame frame,
+      GenerationMetrics metrics,
+      Object context,
+      long start,
+      int lines,
+      long characters,
+      int refs) {
+    if (profiler != null) {
+      profiler.exit(frame, lines, characters);
+    }
+    if (metrics != null) {
+      metrics.generated(context, name, lines, characters, refs, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public Generator<A, B> compile() {
+    return new Named<>(gen.compile(), name);
+  }
+}
@@ -0,0 +1,140 @@
+package io.github.muehmar.codegenerator;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * {@link Generator} executing a generator for every element of a list, separated by the content of
+ * the separator generator. In case the list contains at least {@code threshold} elements, the first
+ * element and separator are generated sequentially and the content of the other elements is
+ * generated in parallel in the common {@link java.util.concurrent.ForkJoinPool} or the pool of the
+ * calling thread, starting from {@link Writer#startFragment()} of the writer after the first
+ * separator. The fragments are merged with {@link Writer#continueWith(Writer, Writer)} in the order
+ * of the elements and the separators are generated in between. An element whose fragment cannot be
+ * merged is generated again sequentially. Smaller lists are generated sequentially like with {@link
+ * Generator#appendList(Generator, Function, Generator)}.
+ */
+final class ParallelListNode<A, C, B> implements Generator<A, B> {
+  private final Generator<C, B> gen;
+  private final Function<A, ? extends Iterable<C>> f;
+  private final Generator<A, B> separator;
+  private final int threshold;
+
+  ParallelListNode(
+      Generator<C, B> gen,
+      Function<A, ? extends Iterable<C>> f,
+      Generator<A, B> separator,
+      int threshold) {
+    this.gen = gen;
+    this.f = f;
+    this.separator = separator;
+    this.threshold = threshold;
+  }
+
+  @Override
+  public Writer generate(A data, B settings, Writer writer) {
+    final List<C> elements = elements(data);
+    Writer current = writer;
+    if (elements.size() < Math.max(threshold, 2)) {
+      for (int i = 0; i < elements.size(); i++) {
+        if (i > 0) {
+          current = separator.generate(data, settings, current);
+        }
+        current = gen.generate(elements.get(i), settings, current);
+      }
+      return current;
+    }
+
+    current = gen.generate(elements.get(0), settings, current);
+    current = separator.generate(data, settings, current);
+    final Writer start = current.startFragment();
+    final Writer[] fragments = render(elements, element -> gen.generate(element, settings, start));
+    for (int i = 1; i < elements.size(); i++) {
+      if (i > 1) {
+        current = separator.generate(data, settings, current);
+      }
+      final Optional<Writer> merged = current.continueWith(start, fragments[i]);
+      current =
+          merged.isPresent() ? merged.get() : gen.generate(elements.get(i), settings, current);
+    }
+    return current;
+  }
+
+  @Override
+  public void generate(A data, B settings, WriterBuilder builder) {
+    final List<C> elements = elements(data);
+    if (elements.size() < Math.max(threshold, 2)) {
+      for (int i = 0; i < elements.size(); i++) {
+        if (i > 0) {
+          separator.generate(data, settings, builder);
+        }
+        gen.generate(elements.get(i), settings, builder);
+      }
+      return;
+    }
+
+    gen.generate(elements.get(0), settings, builder);
+    separator.generate(data, settings, builder);
+    final Writer start = builder.toWriter().startFragment();
+    final Writer[] fragments =
+        render(
+            elements,
+            element -> {
+              final WriterBuilder elementBuilder = start.toBuilder();
+              gen.generate(element, settings, elementBuilder);
+              return elementBuilder.toWriter();
+            });
+    for (int i = 1; i < elements.size(); i++) {
+      if (i > 1) {
+        separator.generate(data, settings, builder);
+      }
+      final Optional<Writer> merged = builder.toWriter().continueWith(start, fragments[i]);
+      if (merged.isPresent()) {
+        builder.apply(ignored -> merged.get());
+      } else {
+        gen.generate(elements.get(i), settings, builder);
+      }
+    }
+  }
+
+  private List<C> elements(A data) {
+    final List<C> elements = new ArrayList<>();
+    f.apply(data).forEach(elements::add);
+    return elements;
+  }
+
+  /**
+   * Renders all elements but the first in parallel, the first fragment is null. The spans of a
+   * started {@link GenerationProfiler} are nested in the span of the calling thread.
+   */
+  private static <C> Writer[] render(List<C> elements, Function<C, Writer> renderElement) {
+    final Writer[] fragments = new Writer[elements.size()];
+    final GenerationProfiler profiler = GenerationProfiler.active();
+    if (profiler == null) {
+      IntStream.range(1, elements.size())
+          .parallel()
+          .forEach(i -> fragments[i] = renderElement.apply(elements.get(i)));
+      return fragments;
+    }
+    final GenerationProfiler.Frame frame = profiler.currentFrame();
+    final long start = System.nanoTime();
+    IntStream.range(1, elements.size())
+        .parallel()
+        .forEach(
+            i ->
+                fragments[i] =
+                    profiler.executeInFrame(frame, () -> renderElement.apply(elements.get(i))));
+    profiler.excludeWaiting(frame, System.nanoTime() - start);
+    return fragments;
+  }
+
+  @Override
+  public Generator<A, B> compile() {
+    return new ParallelListNode<>(gen.compile(), f, separator.compile(), threshold);
+  }
+}
@@ -0,0 +1,169 @@
+package io.github.muehmar.codegenerator;
+
+import ch.bluecare.commons.data.PList;
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link Generator} executing its parts one after another. The parts are executed by a loop, nested
+ * sequences are traversed with an explicit stack instead of recursion. Appending a part to a
+ * sequence does not copy the existing parts, i.e. building a sequence by appending in a loop is
+ * linear in the number of parts.
+ */
+final class Sequence<A, B> implements Generator<A, B> {
+  /** The parts in reversed order, the last part is the head of the list. */
+  private final PList<Generator<A, B>> reversedParts;
+
+  /** The parts in order, created once when the sequence is executed the first time. */
+  private volatile Generator<A, B>[] parts;
+
+  private Sequence(PList<Generator<A, B>> reversedParts) {
+    this.reversedParts = reversedParts;
+  }
+
+  /** Returns a generator executing {@code first} followed by {@code second}. */
+  static <A, B> Generator<A, B> of(Generator<A, B> first, Generator<A, B> second) {
+    if (first instanceof Sequence) {
+      return new Sequence<>(((Sequence<A, B>) first).reversedParts.cons(second));
+    }
+    return new Sequence<>(PList.single(first).cons(second));
+  }
+
+  private static <A, B> Sequence<A, B> ofParts(List<Generator<A, B>> parts) {
+    PList<Generator<A, B>> reversedParts = PList.empty();
+    for (Generator<A, B> part : parts) {
+      reversedParts = reversedParts.cons(part);
+    }
+    return new Sequence<>(reversedParts);
+  }
+
+  @Override
+  public Writer generate(A data, B settings, Writer writer) {
+    final PartIterator<A, B> iterator = new PartIterator<>(parts());
+    Writer current = writer;
+    for (Generator<A, B> part = iterator.next(); part != null; part = iterator.next()) {
+      current = part.generate(data, settings, current);
+    }
+    return current;
+  }
+
+  @Override
+  public void generate(A data, B settings, WriterBuilder builder) {
+    final PartIterator<A, B> iterator = new PartIterator<>(parts());
+    for (Generator<A, B> part = iterator.next(); part != null; part = iterator.next()) {
+      part.generate(data, settings, builder);
+    }
+  }
+
+  /**
+   * Compiles the parts and flattens nested sequences into a single sequence. Empty generators are
+   * removed and consecutive texts are fused into a single text.
+   */
+  @Override
+  public Generator<A, B> compile() {
+    final PartCompiler<A, B> compiler = new PartCompiler<>();
+    final PartIterator<A, B> iterator = new PartIterator<>(parts());
+    for (Generator<A, B> part = iterator.next(); part != null; part = iterator.next()) {
+      compiler.add(part.compile());
+    }
+    return compiler.result();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Generator<A, B>[] parts() {
+    Generator<A, B>[] ordered = parts;
+    if (ordered == null) {
+      ordered = (Generator<A, B>[]) new Generator<?, ?>[reversedParts.size()];
+      int index = ordered.length;
+      for (Generator<A, B> part : reversedParts) {
+        ordered[--index] = part;
+      }
+      parts = ordered;
+    }
+    return ordered;
+  }
+
+  private static final class PartCompiler<A, B> {
+    private final List<Generator<A, B>> parts = new ArrayList<>();
+    private final List<Text<A, B>> pendingTexts = new ArrayList<>();
+
+    private void add(Generator<A, B> part) {
+      if (part instanceof Empty) {
+        return;
+      }
+      if (part instanceof Text) {
+        pendingTexts.add((Text<A, B>) part);
+      } else if (part instanceof Sequence) {
+        for (Generator<A, B> nestedPart : ((Sequence<A, B>) part).parts()) {
+          add(nestedPart);
+        }
+      } else {
+        flushTexts();
+        parts.add(part);
+      }
+    }
+
+    private void flushTexts() {
+      if (!pendingTexts.isEmpty()) {
+        parts.add(pendingTexts.size() == 1 ? pendingTexts.get(0) : Text.concat(pendingTexts));
+        pendingTexts.clear();
+      }
+    }
+
+    private Generator<A, B> result() {
+      flushTexts();
+      if (parts.isEmpty()) {
+        return Empty.instance();
+      }
+      return parts.size() == 1 ? parts.get(0) : ofParts(parts);
+    }
+  }
+
+  /** Iterates over the parts which are not sequences themselves in execution order. */
+  private static final class PartIterator<A, B> {
+    private Generator<A, B>[][] stack;
+    private int[] indices;
+    private int depth;
+
+    @SuppressWarnings("unchecked")
+    private PartIterator(Generator<A, B>[] parts) {
+      this.stack = (Generator<A, B>[][]) new Generator<?, ?>[4][];
+      this.indices = new int[4];
+      this.stack[0] = parts;
+      this.depth = 1;
+    }
+
+    /** Returns the next part or null in case all parts are returned. */
+    private Generator<A, B> next() {
+      while (depth > 0) {
+        final Generator<A, B>[] parts = stack[depth - 1];
+        final int index = indices[depth - 1];
+        if (index >= parts.length) {
+          stack[--depth] = null;
+          continue;
+        }
+        indices[depth - 1] = index + 1;
+        final Generator<A, B> part = parts[index];
+        if (part instanceof Sequence) {
+          push(((Sequence<A, B>) part).parts());
+        } else {
+          return part;
+        }
+      }
+      return null;
+    }
+
+    private void push(Generator<A, B>[] parts) {
+      if (depth == stack.length) {
+        stack = Arrays.copyOf(stack, 2 * depth);
+        indices = Arrays.copyOf(indices, 2 * depth);
+      }
+      stack[depth] = parts;
+      indices[depth] = 0;
+      depth++;
+    }
+  }
+}
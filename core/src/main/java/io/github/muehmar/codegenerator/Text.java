@@ -0,0 +1,64 @@
+package io.github.muehmar.codegenerator;
+
+import io.github.muehmar.codegenerator.writer.Template;
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+import java.util.List;
+
+/**
+ * {@link Generator} printing already rendered lines, the lines are printed without formatting. A
+ * line which is null is printed as new line without any content, i.e. like {@link
+ * Writer#println()} does.
+ */
+final class Text<A, B> implements Generator<A, B> {
+  private static final Template RAW = Template.of("%s");
+
+  private final String[] lines;
+
+  private Text(String[] lines) {
+    this.lines = lines;
+  }
+
+  static <A, B> Text<A, B> ofLine(String line) {
+    return new Text<>(new String[] {line});
+  }
+
+  static <A, B> Text<A, B> newLine() {
+    return new Text<>(new String[] {null});
+  }
+
+  /** Returns a single generator printing the lines of all given texts. */
+  static <A, B> Text<A, B> concat(List<Text<A, B>> texts) {
+    int size = 0;
+    for (Text<A, B> text : texts) {
+      size += text.lines.length;
+    }
+    final String[] lines = new String[size];
+    int index = 0;
+    for (Text<A, B> text : texts) {
+      System.arraycopy(text.lines, 0, lines, index, text.lines.length);
+      index += text.lines.length;
+    }
+    return new Text<>(lines);
+  }
+
+  @Override
+  public Writer generate(A data, B settings, Writer writer) {
+    Writer current = writer;
+    for (String line : lines) {
+      current = line == null ? current.println() : current.println(RAW, line);
+    }
+    return current;
+  }
+
+  @Override
+  public void generate(A data, B settings, WriterBuilder builder) {
+    for (String line : lines) {
+      if (line == null) {
+        builder.println();
+      } else {
+        builder.println(RAW, line);
+      }
+    }
+  }
+}
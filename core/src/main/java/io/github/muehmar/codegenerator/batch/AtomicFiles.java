@@ -0,0 +1,39 @@
+package io.github.muehmar.codegenerator.batch;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/** Replaces files via a temporary file in the same directory and a move. */
+final class AtomicFiles {
+  private AtomicFiles() {}
+
+  /**
+   * Writes the content to the target, the target is replaced atomically if supported by the file
+   * system, i.e. readers see either the previous or the new content.
+   */
+  static void write(Path target, byte[] content) throws IOException {
+    final Path absoluteTarget = target.toAbsolutePath();
+    final Path tempFile =
+        Files.createTempFile(
+            absoluteTarget.getParent(), "." + absoluteTarget.getFileName().toString(), ".tmp");
+    try {
+      Files.write(tempFile, content);
+      moveReplacing(tempFile, absoluteTarget);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /** Moves the source to the target, atomically if supported by the file system. */
+  static void moveReplacing(Path source, Path target) throws IOException {
+    try {
+      Files.move(
+          source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
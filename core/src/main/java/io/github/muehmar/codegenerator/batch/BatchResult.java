@@ -0,0 +1,20 @@
+package io.github.muehmar.codegenerator.batch;
+
+import ch.bluecare.commons.data.PList;
+import java.time.Duration;
+import lombok.Value;
+
+/** Results of all jobs of a {@link GenerationBatch} in the order the jobs were submitted. */
+@Value
+public class BatchResult {
+  PList<JobResult> results;
+  Duration duration;
+
+  public PList<JobResult> getFailures() {
+    return results.filter(result -> !result.isSuccess());
+  }
+
+  public boolean isSuccess() {
+    return results.forall(JobResult::isSuccess);
+  }
+}
@@ -0,0 +1,56 @@
+package io.github.muehmar.codegenerator.batch;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** Channel passing the written bytes to a delegate and computing their SHA-256 hash. */
+final class DigestingChannel implements WritableByteChannel {
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final WritableByteChannel delegate;
+  private final MessageDigest digest;
+
+  DigestingChannel(WritableByteChannel delegate) {
+    this.delegate = delegate;
+    try {
+      this.digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported", e);
+    }
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    final ByteBuffer bytes = src.duplicate();
+    final int written = delegate.write(src);
+    // called on Buffer, the covariant overrides of ByteBuffer do not exist on Java 8
+    ((Buffer) bytes).limit(bytes.position() + written);
+    digest.update(bytes);
+    return written;
+  }
+
+  /** Returns the hash of the written bytes as hexadecimal string. */
+  String hash() {
+    final byte[] hash = digest.digest();
+    final char[] hex = new char[2 * hash.length];
+    for (int i = 0; i < hash.length; i++) {
+      hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+      hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+    }
+    return new String(hex);
+  }
+
+  @Override
+  public boolean isOpen() {
+    return delegate.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    delegate.close();
+  }
+}
@@ -0,0 +1,332 @@
+package io.github.muehmar.codegenerator.batch;
+
+import ch.bluecare.commons.data.PList;
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics;
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Writes the content of many {@link Writer}s to the files of a directory and touches only the
+ * files whose content changed. This keeps the modification time of unchanged files, which allows
+ * up-to-date checks of subsequent build steps.
+ *
+ * <p>The content of a file is compared with the SHA-256 hash recorded in a manifest file when the
+ * file was written. In case the hash is equal, the content is compared byte by byte with the
+ * existing file to detect modifications outside of the source set. Changed files are written to a
+ * temporary file which replaces the target atomically if supported by the file system. Files are
+ * written in parallel.
+ *
+ * <p>Files recorded in the manifest which are not produced anymore are deleted together with the
+ * resulting empty directories. Files in the directory which were not written by the source set are
+ * never deleted. A source set is immutable and can be written multiple times.
+ */
+public final class GeneratedSourceSet {
+  /** Name of the manifest file in the directory of the source set if not configured otherwise. */
+  public static final String DEFAULT_MANIFEST_NAME = ".generated-sources";
+
+  /**
+   * Existing files are compared in chunks of this size. They are not mapped into memory, as a
+   * mapped file cannot be replaced or deleted on Windows until the mapping is garbage collected.
+   */
+  private static final int COMPARE_BUFFER_SIZE = 16 * 1024;
+
+  private final Path directory;
+  private final Path manifestFile;
+  private final Supplier<ExecutorService> createExecutor;
+  private final boolean shutdownExecutor;
+
+  private GeneratedSourceSet(
+      Path directory,
+      Path manifestFile,
+      Supplier<ExecutorService> createExecutor,
+      boolean shutdownExecutor) {
+    this.directory = directory;
+    this.manifestFile = manifestFile;
+    this.createExecutor = createExecutor;
+    this.shutdownExecutor = shutdownExecutor;
+  }
+
+  /**
+   * Creates a source set for the given directory with the manifest file {@link
+   * #DEFAULT_MANIFEST_NAME} in the directory. The files are written on a new pool with one thread
+   * per available processor.
+   */
+  public static GeneratedSourceSet of(Path directory) {
+    final Path absoluteDirectory = directory.toAbsolutePath().normalize();
+    final int processors = Runtime.getRuntime().availableProcessors();
+    return new GeneratedSourceSet(
+        absoluteDirectory,
+        absoluteDirectory.resolve(DEFAULT_MANIFEST_NAME),
+        () -> Executors.newFixedThreadPool(processors),
+        true);
+  }
+
+  /** Returns a source set which records the written files in the given manifest file. */
+  public GeneratedSourceSet withManifest(Path manifestFile) {
+    return new GeneratedSourceSet(directory, manifestFile, createExecutor, shutdownExecutor);
+  }
+
+  /**
+   * Returns a source set which writes the files on the given executor. The executor is not shut
+   * down by the source set.
+   */
+  public GeneratedSourceSet withExecutor(ExecutorService executor) {
+    return new GeneratedSourceSet(directory, manifestFile, () -> executor, false);
+  }
+
+  /**
+   * Returns a source set which writes the files on a new pool with the given number of threads,
+   * the pool is shut down after the files are written.
+   */
+  public GeneratedSourceSet withThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+    }
+    return new GeneratedSourceSet(
+        directory, manifestFile, () -> Executors.newFixedThreadPool(threads), true);
+  }
+
+  /**
+   * Writes the content of the writers to the files at the given paths, which are relative to the
+   * directory of this source set, and deletes the previously written files which are not contained
+   * anymore. Missing directories are created.
+   *
+   * <p>In case a file cannot be written, the remaining files are still written but no stale files
+   * are deleted. The manifest then contains the files written successfully and keeps the previous
+   * entries, so the stale files are deleted by a later successful write.
+   *
+   * @throws IllegalArgumentException if a path is not within the directory of this source set
+   * @throws IOException if a file or the manifest cannot be read or written
+   * @throws InterruptedException if the calling thread is interrupted while waiting for the files
+   */
+  public SourceSetResult write(Map<Path, Writer> sources)
+      throws IOException, InterruptedException {
+    final long start = System.nanoTime();
+    final Map<String, Path> targets = resolveTargets(sources.keySet());
+    final Map<String, String> previousHashes = SourceManifest.load(manifestFile);
+
+    final Map<String, CompletableFuture<Outcome>> outcomes = new TreeMap<>();
+    final Map<String, String> hashes = new HashMap<>();
+    final List<Path> written = new ArrayList<>();
+    final List<Path> unchanged = new ArrayList<>();
+    final List<Throwable> failures = new ArrayList<>();
+    final ExecutorService executor = createExecutor.get();
+    try {
+      for (Map.Entry<Path, Writer> source : sources.entrySet()) {
+        final String key = key(source.getKey());
+        final Path target = targets.get(key);
+        final String previousHash = previousHashes.get(key);
+        outcomes.put(
+            key,
+            CompletableFuture.supplyAsync(
+                () -> writeIfChanged(source.getValue(), target, previousHash), executor));
+      }
+      for (Map.Entry<String, CompletableFuture<Outcome>> entry : outcomes.entrySet()) {
+        try {
+          final Outcome outcome = entry.getValue().get();
+          hashes.put(entry.getKey(), outcome.hash);
+          if (outcome.written) {
+            written.add(targets.get(entry.getKey()));
+          } else {
+            unchanged.add(targets.get(entry.getKey()));
+          }
+        } catch (ExecutionException e) {
+          final Throwable cause = e.getCause();
+          failures.add(cause instanceof UncheckedIOException ? cause.getCause() : cause);
+        }
+      }
+    } finally {
+      if (shutdownExecutor) {
+        executor.shutdown();
+      }
+    }
+
+    final List<Path> deleted = new ArrayList<>();
+    if (failures.isEmpty()) {
+      deleteStaleFiles(previousHashes, hashes, deleted);
+    } else {
+      retainPreviousEntries(previousHashes, hashes);
+    }
+    SourceManifest.save(manifestFile, hashes);
+
+    if (!failures.isEmpty()) {
+      throw failure(failures);
+    }
+    Collections.sort(deleted);
+    return new SourceSetResult(
+        PList.fromIter(written),
+        PList.fromIter(unchanged),
+        PList.fromIter(deleted),
+        Duration.ofNanos(System.nanoTime() - start));
+  }
+
+  private Map<String, Path> resolveTargets(Iterable<Path> paths) {
+    final Map<String, Path> targets = new HashMap<>();
+    for (Path path : paths) {
+      final Path target = directory.resolve(path).normalize();
+      if (path.isAbsolute() || !target.startsWith(directory) || target.equals(directory)) {
+        throw new IllegalArgumentException(
+            "Path of a generated source must be within the directory " + directory + ": " + path);
+      }
+      if (targets.put(key(path), target) != null) {
+        throw new IllegalArgumentException("Duplicate path of a generated source: " + path);
+      }
+    }
+    return targets;
+  }
+
+  /** Returns the normalized relative path with slashes as separator, used in the manifest. */
+  static String key(Path path) {
+    final StringBuilder sb = new StringBuilder();
+    for (Path name : path.normalize()) {
+      if (sb.length() > 0) {
+        sb.append('/');
+      }
+      sb.append(name);
+    }
+    return sb.toString();
+  }
+
+  private static Outcome writeIfChanged(Writer writer, Path target, String previousHash) {
+    final GenerationMetrics metrics = GenerationMetrics.installed();
+    final Object metricsContext =
+        metrics != null ? metrics.begin(GenerationMetrics.Operation.GENERATE_FILE) : null;
+    final long start = System.nanoTime();
+    try {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final DigestingChannel channel = new DigestingChannel(Channels.newChannel(out));
+      writer.writeTo(channel);
+      final String hash = channel.hash();
+      final byte[] content = out.toByteArray();
+
+      final boolean unchanged =
+          (previousHash == null || previousHash.equals(hash)) && contentEquals(target, content);
+      if (unchanged) {
+        return new Outcome(hash, false);
+      }
+      Files.createDirectories(target.getParent());
+      AtomicFiles.write(target, content);
+      if (metrics != null) {
+        metrics.fileGenerated(
+            metricsContext,
+            target.toString(),
+            writer.lineCount(),
+            content.length,
+            writer.refCount(),
+            System.nanoTime() - start);
+      }
+      return new Outcome(hash, true);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static boolean contentEquals(Path file, byte[] content) throws IOException {
+    if (!Files.isRegularFile(file)) {
+      return false;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() != content.length) {
+        return false;
+      }
+      final ByteBuffer existing =
+          ByteBuffer.allocate(Math.min(COMPARE_BUFFER_SIZE, content.length));
+      int offset = 0;
+      while (offset < content.length) {
+        // called on Buffer, the covariant overrides of ByteBuffer do not exist on Java 8
+        ((Buffer) existing).clear();
+        if (channel.read(existing) < 0) {
+          return false;
+        }
+        ((Buffer) existing).flip();
+        final int length = existing.remaining();
+        if (!existing.equals(ByteBuffer.wrap(content, offset, length))) {
+          return false;
+        }
+        offset += length;
+      }
+      return true;
+    }
+  }
+
+  private void deleteStaleFiles(
+      Map<String, String> previousHashes, Map<String, String> hashes, List<Path> deleted)
+      throws IOException {
+    for (String key : previousHashes.keySet()) {
+      if (!hashes.containsKey(key)) {
+        final Path file = directory.resolve(key).normalize();
+        if (file.startsWith(directory) && Files.deleteIfExists(file)) {
+          deleted.add(file);
+          deleteEmptyParents(file);
+        }
+      }
+    }
+  }
+
+  private void deleteEmptyParents(Path file) throws IOException {
+    Path parent = file.getParent();
+    while (parent != null && !parent.equals(directory) && isEmptyDirectory(parent)) {
+      Files.delete(parent);
+      parent = parent.getParent();
+    }
+  }
+
+  private static boolean isEmptyDirectory(Path directory) throws IOException {
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      return !entries.iterator().hasNext();
+    }
+  }
+
+  /**
+   * Keeps the previous entries of the files which could not be written, so they are still deleted
+   * once they become stale.
+   */
+  private static void retainPreviousEntries(
+      Map<String, String> previousHashes, Map<String, String> hashes) {
+    for (Map.Entry<String, String> previous : previousHashes.entrySet()) {
+      hashes.putIfAbsent(previous.getKey(), previous.getValue());
+    }
+  }
+
+  private static IOException failure(List<Throwable> failures) {
+    final Throwable first = failures.get(0);
+    final IOException exception =
+        new IOException(
+            "Unable to write " + failures.size() + " generated source(s): " + first.getMessage(),
+            first);
+    failures.stream().skip(1).forEach(exception::addSuppressed);
+    return exception;
+  }
+
+  private static final class Outcome {
+    private final String hash;
+    private final boolean written;
+
+    private Outcome(String hash, boolean written) {
+      this.hash = hash;
+      this.written = written;
+    }
+  }
+}
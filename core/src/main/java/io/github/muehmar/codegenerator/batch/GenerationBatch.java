@@ -0,0 +1,327 @@
+package io.github.muehmar.codegenerator.batch;
+
+import ch.bluecare.commons.data.PList;
+import io.github.muehmar.codegenerator.Generator;
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics;
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Generates and writes many compilation units with the same {@link Generator}. The jobs are
+ * executed on a pool of workers, the number of jobs which are rendered or written at the same time
+ * is bounded, which caps the memory used by rendered writers independent of the number of jobs.
+ *
+ * <p>A failing job does not abort the batch, the failure is reported in the {@link JobResult} of
+ * the job. A batch is immutable and can be run multiple times.
+ */
+public final class GenerationBatch<A, B> {
+  private final Generator<A, B> generator;
+  private final B settings;
+  private final Supplier<Writer> createWriter;
+  private final Supplier<ExecutorService> createExecutor;
+  private final boolean shutdownExecutor;
+  private final int maxInFlight;
+  private final Optional<Incremental<A, B>> incremental;
+
+  @SuppressWarnings("java:S107")
+  private GenerationBatch(
+      Generator<A, B> generator,
+      B settings,
+      Supplier<Writer> createWriter,
+      Supplier<ExecutorService> createExecutor,
+      boolean shutdownExecutor,
+      int maxInFlight,
+      Optional<Incremental<A, B>> incremental) {
+    this.generator = generator;
+    this.settings = settings;
+    this.createWriter = createWriter;
+    this.createExecutor = createExecutor;
+    this.shutdownExecutor = shutdownExecutor;
+    this.maxInFlight = maxInFlight;
+    this.incremental = incremental;
+  }
+
+  /**
+   * Creates a batch which generates the jobs with the given generator and settings into a {@link
+   * Writer#javaWriter()}. The jobs are executed on a new pool with one thread per available
+   * processor and at most twice as many jobs are in flight.
+   */
+  public static <A, B> GenerationBatch<A, B> of(Generator<A, B> generator, B settings) {
+    final int processors = Runtime.getRuntime().availableProcessors();
+    return new GenerationBatch<>(
+        generator,
+        settings,
+        Writer::javaWriter,
+        () -> Executors.newFixedThreadPool(processors),
+        true,
+        2 * processors,
+        Optional.empty());
+  }
+
+  /** Returns a batch which generates the content into writers created by the given supplier. */
+  public GenerationBatch<A, B> withWriter(Supplier<Writer> createWriter) {
+    return new GenerationBatch<>(
+        generator,
+        settings,
+        createWriter,
+        createExecutor,
+        shutdownExecutor,
+        maxInFlight,
+        incremental);
+  }
+
+  /**
+   * Returns a batch which executes the jobs on the given executor, e.g. an executor with a thread
+   * per task for virtual threads. The executor is not shut down by the batch.
+   */
+  public GenerationBatch<A, B> withExecutor(ExecutorService executor) {
+    return new GenerationBatch<>(
+        generator, settings, createWriter, () -> executor, false, maxInFlight, incremental);
+  }
+
+  /**
+   * Returns a batch which executes the jobs on a new pool with the given number of threads, the
+   * pool is shut down after the batch is finished.
+   */
+  public GenerationBatch<A, B> withThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+    }
+    return new GenerationBatch<>(
+        generator,
+        settings,
+        createWriter,
+        () -> Executors.newFixedThreadPool(threads),
+        true,
+        maxInFlight,
+        incremental);
+  }
+
+  /**
+   * Returns a batch which renders and writes at most the given number of jobs at the same time.
+   * Further jobs are taken from the stream only after a job in flight is finished.
+   */
+  public GenerationBatch<A, B> withMaxInFlight(int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("Maximum jobs in flight must be positive: " + maxInFlight);
+    }
+    return new GenerationBatch<>(
+        generator,
+        settings,
+        createWriter,
+        createExecutor,
+        shutdownExecutor,
+        maxInFlight,
+        incremental);
+  }
+
+  /**
+   * Returns a batch which skips the rendering and writing of jobs whose input did not change since
+   * the last run. The fingerprint of the input of a job is created with the given function, it
+   * must return the same string for the same data and settings across runs and should change
+   * whenever the data or settings change, e.g. a hash of a serialized form. A job is skipped in
+   * case the fingerprint and the version of the generator equal the ones of the last run and the
+   * target file still exists. A job whose fingerprint contains tabs or newlines fails before its
+   * target is written.
+   *
+   * <p>The fingerprints and the SHA-256 hashes of the written files are stored in the given index
+   * file after every run. The version of the generator must be changed whenever the generator
+   * itself changes.
+   */
+  public GenerationBatch<A, B> withIncremental(
+      Path indexFile, String generatorVersion, BiFunction<A, B, String> fingerprint) {
+    return new GenerationBatch<>(
+        generator,
+        settings,
+        createWriter,
+        createExecutor,
+        shutdownExecutor,
+        maxInFlight,
+        Optional.of(new Incremental<>(indexFile, generatorVersion, fingerprint)));
+  }
+
+  /**
+   * Executes all jobs of the stream and waits until they are finished. The stream is consumed on
+   * the calling thread. Missing parent directories of the targets are created. A target is written
+   * to a temporary file first and replaced atomically if supported by the file system, i.e. a
+   * failing job leaves the previous content of its target unchanged.
+   *
+   * @throws IOException if the index file of an incremental batch cannot be read or written
+   * @throws InterruptedException if the calling thread is interrupted while waiting for the jobs
+   */
+  public BatchResult run(Stream<GenerationJob<A>> jobs) throws IOException, InterruptedException {
+    final long start = System.nanoTime();
+    final Optional<GenerationIndex> index = loadIndex();
+    final ExecutorService executor = createExecutor.get();
+    final Semaphore inFlight = new Semaphore(maxInFlight);
+    final List<CompletableFuture<JobResult>> results = new ArrayList<>();
+    try {
+      final Iterator<GenerationJob<A>> iterator = jobs.iterator();
+      while (iterator.hasNext()) {
+        final GenerationJob<A> job = iterator.next();
+        inFlight.acquire();
+        results.add(submit(executor, job, index, inFlight));
+      }
+      inFlight.acquire(maxInFlight);
+    } finally {
+      if (shutdownExecutor) {
+        executor.shutdown();
+      }
+    }
+    if (index.isPresent()) {
+      index.get().save();
+    }
+    final Duration duration = Duration.ofNanos(System.nanoTime() - start);
+    return new BatchResult(PList.fromIter(results).map(CompletableFuture::join), duration);
+  }
+
+  private Optional<GenerationIndex> loadIndex() throws IOException {
+    if (!incremental.isPresent()) {
+      return Optional.empty();
+    }
+    final Incremental<A, B> config = incremental.get();
+    return Optional.of(GenerationIndex.load(config.indexFile, config.generatorVersion));
+  }
+
+  private CompletableFuture<JobResult> submit(
+      ExecutorService executor,
+      GenerationJob<A> job,
+      Optional<GenerationIndex> index,
+      Semaphore inFlight) {
+    final CompletableFuture<JobResult> result = new CompletableFuture<>();
+    try {
+      executor.execute(
+          () -> {
+            try {
+              result.complete(execute(job, index));
+            } catch (Throwable e) {
+              result.complete(failure(job, 0, 0, e));
+            } finally {
+              inFlight.release();
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      result.complete(failure(job, 0, 0, e));
+      inFlight.release();
+    }
+    return result;
+  }
+
+  private JobResult execute(GenerationJob<A> job, Optional<GenerationIndex> index) {
+    final GenerationMetrics metrics = GenerationMetrics.installed();
+    final Object metricsContext =
+        metrics != null ? metrics.begin(GenerationMetrics.Operation.GENERATE_FILE) : null;
+    final long renderStart = System.nanoTime();
+    final Optional<String> fingerprint;
+    final Writer writer;
+    try {
+      fingerprint =
+          incremental.map(
+              config ->
+                  GenerationIndex.checkFingerprint(
+                      config.fingerprint.apply(job.getData(), settings)));
+      final boolean unchanged =
+          fingerprint.isPresent()
+              && index.get().retainIfUnchanged(job.getTarget(), fingerprint.get());
+      if (unchanged) {
+        return new JobResult(
+            job.getTarget(),
+            Duration.ofNanos(System.nanoTime() - renderStart),
+            Duration.ZERO,
+            true,
+            Optional.empty());
+      }
+      writer = generator.generate(job.getData(), settings, createWriter.get());
+    } catch (RuntimeException e) {
+      return failure(job, System.nanoTime() - renderStart, 0, e);
+    }
+    final long writeStart = System.nanoTime();
+    try {
+      final String outputHash = write(writer, job.getTarget());
+      if (fingerprint.isPresent()) {
+        index.get().put(job.getTarget(), fingerprint.get(), outputHash);
+      }
+      if (metrics != null) {
+        metrics.fileGenerated(
+            metricsContext,
+            job.getTarget().toString(),
+            writer.lineCount(),
+            Files.size(job.getTarget()),
+            writer.refCount(),
+            System.nanoTime() - renderStart);
+      }
+    } catch (IOException | RuntimeException e) {
+      return failure(job, writeStart - renderStart, System.nanoTime() - writeStart, e);
+    }
+    return new JobResult(
+        job.getTarget(),
+        Duration.ofNanos(writeStart - renderStart),
+        Duration.ofNanos(System.nanoTime() - writeStart),
+        false,
+        Optional.empty());
+  }
+
+  /**
+   * Writes the content to a temporary file which replaces the target afterwards and returns the
+   * hash of the written bytes. The target is not changed in case writing fails.
+   */
+  private static String write(Writer writer, Path target) throws IOException {
+    final Path absoluteTarget = target.toAbsolutePath();
+    final Path parent = absoluteTarget.getParent();
+    Files.createDirectories(parent);
+    final Path tempFile =
+        Files.createTempFile(parent, "." + absoluteTarget.getFileName().toString(), ".tmp");
+    try {
+      final String hash;
+      try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+        final DigestingChannel digestingChannel = new DigestingChannel(channel);
+        writer.writeTo(digestingChannel);
+        hash = digestingChannel.hash();
+      }
+      AtomicFiles.moveReplacing(tempFile, absoluteTarget);
+      return hash;
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private static JobResult failure(
+      GenerationJob<?> job, long renderNanos, long writeNanos, Throwable e) {
+    return new JobResult(
+        job.getTarget(),
+        Duration.ofNanos(renderNanos),
+        Duration.ofNanos(writeNanos),
+        false,
+        Optional.of(e));
+  }
+
+  private static final class Incremental<A, B> {
+    private final Path indexFile;
+    private final String generatorVersion;
+    private final BiFunction<A, B, String> fingerprint;
+
+    private Incremental(
+        Path indexFile, String generatorVersion, BiFunction<A, B, String> fingerprint) {
+      this.indexFile = indexFile;
+      this.generatorVersion = generatorVersion;
+      this.fingerprint = fingerprint;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package io.github.muehmar.codegenerator.batch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fingerprints of the inputs and hashes of the outputs of the files generated by a {@link
+ * GenerationBatch}, stored in an index file. The first line of the file contains the version of
+ * the generator, every other line contains the input fingerprint, the output hash and the path of a
+ * generated file separated by tabs.
+ *
+ * <p>An index is thread safe, the entries of a run are collected while the jobs are executed and
+ * replace the previous entries when the index is saved.
+ */
+final class GenerationIndex {
+  private static final String VERSION_PREFIX = "version\t";
+
+  private final Path file;
+  private final String generatorVersion;
+  private final Map<String, Entry> previousEntries;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private GenerationIndex(Path file, String generatorVersion, Map<String, Entry> previousEntries) {
+    this.file = file;
+    this.generatorVersion = generatorVersion;
+    this.previousEntries = previousEntries;
+  }
+
+  /**
+   * Loads the index from the given file. The previous entries are ignored in case the file does
+   * not exist or was written for another version of the generator.
+   */
+  static GenerationIndex load(Path file, String generatorVersion) throws IOException {
+    final Map<String, Entry> previousEntries = new ConcurrentHashMap<>();
+    if (Files.exists(file)) {
+      try (BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+        final String versionLine = reader.readLine();
+        if (versionLine != null && versionLine.equals(VERSION_PREFIX + generatorVersion)) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            final String[] parts = line.split("\t", 3);
+            if (parts.length == 3) {
+              previousEntries.put(parts[2], new Entry(parts[0], parts[1]));
+            }
+          }
+        }
+      }
+    }
+    return new GenerationIndex(file, generatorVersion, previousEntries);
+  }
+
+  /**
+   * Returns true and keeps the previous entry in case the target was generated from an input with
+   * the same fingerprint and the file still exists.
+   */
+  boolean retainIfUnchanged(Path target, String fingerprint) {
+    final String key = key(target);
+    final Entry previous = previousEntries.get(key);
+    if (previous != null && previous.fingerprint.equals(fingerprint) && Files.exists(target)) {
+      entries.put(key, previous);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Records the fingerprint of the input and the hash of the output written to the target. The
+   * fingerprint must be checked with {@link #checkFingerprint(String)}.
+   */
+  void put(Path target, String fingerprint, String outputHash) {
+    entries.put(key(target), new Entry(fingerprint, outputHash));
+  }
+
+  /**
+   * Returns the given fingerprint in case it can be stored in the index.
+   *
+   * @throws IllegalArgumentException if the fingerprint contains tabs or newlines
+   */
+  static String checkFingerprint(String fingerprint) {
+    if (fingerprint.indexOf('\t') >= 0 || fingerprint.indexOf('\n') >= 0) {
+      throw new IllegalArgumentException("Fingerprint must not contain tabs or newlines");
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Writes the entries of this run sorted by path to the index file, the file is replaced
+   * atomically if supported by the file system.
+   */
+  void save() throws IOException {
+    final Path absoluteFile = file.toAbsolutePath();
+    Files.createDirectories(absoluteFile.getParent());
+    final Path tempFile = Files.createTempFile(absoluteFile.getParent(), ".index", ".tmp");
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(tempFile, UTF_8)) {
+        writer.write(VERSION_PREFIX + generatorVersion);
+        writer.write('\n');
+        for (Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet()) {
+          writer.write(entry.getValue().fingerprint);
+          writer.write('\t');
+          writer.write(entry.getValue().outputHash);
+          writer.write('\t');
+          writer.write(entry.getKey());
+          writer.write('\n');
+        }
+      }
+      AtomicFiles.moveReplacing(tempFile, absoluteFile);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private static String key(Path target) {
+    return target.toAbsolutePath().normalize().toString();
+  }
+
+  private static final class Entry {
+    private final String fingerprint;
+    private final String outputHash;
+
+    private Entry(String fingerprint, String outputHash) {
+      this.fingerprint = fingerprint;
+      this.outputHash = outputHash;
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package io.github.muehmar.codegenerator.batch;
+
+import java.nio.file.Path;
+import lombok.Value;
+
+/** Data of a single compilation unit together with the file the content is written to. */
+@Value
+public class GenerationJob<A> {
+  A data;
+  Path target;
+
+  public static <A> GenerationJob<A> of(A data, Path target) {
+    return new GenerationJob<>(data, target);
+  }
+}
@@ -0,0 +1,30 @@
+package io.github.muehmar.codegenerator.batch;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import lombok.Value;
+
+/**
+ * Outcome of a single {@link GenerationJob}. The durations are zero for the steps which were not
+ * executed because a previous step failed or the job was skipped.
+ */
+@Value
+public class JobResult {
+  Path target;
+  Duration renderDuration;
+  Duration writeDuration;
+
+  /** True in case the input did not change since the last incremental run. */
+  boolean skipped;
+
+  Optional<Throwable> failure;
+
+  public boolean isSuccess() {
+    return !failure.isPresent();
+  }
+
+  public Duration getTotalDuration() {
+    return renderDuration.plus(writeDuration);
+  }
+}
@@ -0,0 +1,155 @@
+package io.github.muehmar.codegenerator.batch;
+
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics;
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes the content of many {@link Writer}s as entries of a single zip archive, e.g. a source JAR
+ * which can be passed to javac instead of a directory tree. The archive is reproducible: the
+ * entries are ordered by their name and all entries have the same modification time, which is
+ * {@link #DEFAULT_TIMESTAMP} if not configured otherwise.
+ *
+ * <p>The entries are compressed by default. Stored entries are faster to write and read but
+ * require the content of an entry to be rendered into memory before it is written, as the size
+ * and checksum precede the content in the archive.
+ */
+public final class SourceArchive {
+  /**
+   * Modification time of the entries if not configured otherwise, the same value is used by Gradle
+   * for reproducible archives.
+   */
+  public static final LocalDateTime DEFAULT_TIMESTAMP = LocalDateTime.of(1980, 2, 1, 0, 0);
+
+  private final Path file;
+  private final LocalDateTime timestamp;
+  private final boolean stored;
+
+  private SourceArchive(Path file, LocalDateTime timestamp, boolean stored) {
+    this.file = file;
+    this.timestamp = timestamp;
+    this.stored = stored;
+  }
+
+  /** Creates an archive written to the given file with compressed entries. */
+  public static SourceArchive of(Path file) {
+    return new SourceArchive(file, DEFAULT_TIMESTAMP, false);
+  }
+
+  /** Returns an archive whose entries are stored without compression. */
+  public SourceArchive withStoredEntries() {
+    return new SourceArchive(file, timestamp, true);
+  }
+
+  /**
+   * Returns an archive whose entries have the given modification time. Zip archives store the
+   * local date and time without a time zone, the timestamp is therefore the same in every zone.
+   */
+  public SourceArchive withTimestamp(LocalDateTime timestamp) {
+    return new SourceArchive(file, timestamp, stored);
+  }
+
+  /**
+   * Writes the content of the writers as entries with the given relative paths, separated by
+   * slashes, to the archive. The archive is written to a temporary file which replaces an existing
+   * archive atomically if supported by the file system. Missing parent directories are created.
+   *
+   * @throws IllegalArgumentException if a path is absolute or points outside of the archive
+   * @throws IOException if the archive cannot be written
+   */
+  public void write(Map<Path, Writer> sources) throws IOException {
+    final Map<String, Writer> entries = new TreeMap<>();
+    for (Map.Entry<Path, Writer> source : sources.entrySet()) {
+      final String name = entryName(source.getKey());
+      if (entries.put(name, source.getValue()) != null) {
+        throw new IllegalArgumentException("Duplicate path of a generated source: " + name);
+      }
+    }
+
+    final Path absoluteFile = file.toAbsolutePath();
+    Files.createDirectories(absoluteFile.getParent());
+    final Path tempFile =
+        Files.createTempFile(
+            absoluteFile.getParent(), "." + absoluteFile.getFileName().toString(), ".tmp");
+    try {
+      try (ZipOutputStream out =
+          new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        final long time = timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        final WritableByteChannel channel = Channels.newChannel(out);
+        final GenerationMetrics metrics = GenerationMetrics.installed();
+        for (Map.Entry<String, Writer> entry : entries.entrySet()) {
+          final Object metricsContext =
+              metrics != null ? metrics.begin(GenerationMetrics.Operation.GENERATE_FILE) : null;
+          final long start = System.nanoTime();
+          final Writer writer = entry.getValue();
+          final long size;
+          if (stored) {
+            size = writeStored(out, entry.getKey(), time, writer);
+          } else {
+            final ZipEntry zipEntry = new ZipEntry(entry.getKey());
+            zipEntry.setTime(time);
+            out.putNextEntry(zipEntry);
+            writer.writeTo(channel);
+            out.closeEntry();
+            size = zipEntry.getSize();
+          }
+          if (metrics != null) {
+            metrics.fileGenerated(
+                metricsContext,
+                absoluteFile + "!/" + entry.getKey(),
+                writer.lineCount(),
+                size,
+                writer.refCount(),
+                System.nanoTime() - start);
+          }
+        }
+      }
+      AtomicFiles.moveReplacing(tempFile, absoluteFile);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /** Writes an entry without compression and returns its size. */
+  private static long writeStored(ZipOutputStream out, String name, long time, Writer writer)
+      throws IOException {
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    writer.writeTo(Channels.newChannel(content));
+    final CRC32 crc = new CRC32();
+    crc.update(content.toByteArray());
+
+    final ZipEntry zipEntry = new ZipEntry(name);
+    zipEntry.setTime(time);
+    zipEntry.setMethod(ZipEntry.STORED);
+    zipEntry.setSize(content.size());
+    zipEntry.setCompressedSize(content.size());
+    zipEntry.setCrc(crc.getValue());
+    out.putNextEntry(zipEntry);
+    content.writeTo(out);
+    out.closeEntry();
+    return content.size();
+  }
+
+  private static String entryName(Path path) {
+    final Path normalized = path.normalize();
+    final String name = GeneratedSourceSet.key(normalized);
+    if (path.isAbsolute() || name.isEmpty() || normalized.startsWith("..")) {
+      throw new IllegalArgumentException(
+          "Path of a generated source must be relative and within the archive: " + path);
+    }
+    return name;
+  }
+}
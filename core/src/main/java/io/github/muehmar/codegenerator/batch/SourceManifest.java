@@ -0,0 +1,51 @@
+package io.github.muehmar.codegenerator.batch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Files written by a {@link GeneratedSourceSet}, stored in a manifest file. Every line contains
+ * the SHA-256 hash of the content and the path of a file relative to the directory of the source
+ * set, separated by a tab.
+ */
+final class SourceManifest {
+  private SourceManifest() {}
+
+  /**
+   * Returns the hashes of the files by their relative path, the map is empty in case the manifest
+   * file does not exist.
+   */
+  static Map<String, String> load(Path file) throws IOException {
+    final Map<String, String> hashes = new HashMap<>();
+    if (Files.exists(file)) {
+      try (BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          final String[] parts = line.split("\t", 2);
+          if (parts.length == 2) {
+            hashes.put(parts[1], parts[0]);
+          }
+        }
+      }
+    }
+    return hashes;
+  }
+
+  /** Writes the hashes sorted by path to the manifest file, the file is replaced atomically. */
+  static void save(Path file, Map<String, String> hashes) throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, String> entry : new TreeMap<>(hashes).entrySet()) {
+      sb.append(entry.getValue()).append('\t').append(entry.getKey()).append('\n');
+    }
+    final Path absoluteFile = file.toAbsolutePath();
+    Files.createDirectories(absoluteFile.getParent());
+    AtomicFiles.write(absoluteFile, sb.toString().getBytes(UTF_8));
+  }
+}
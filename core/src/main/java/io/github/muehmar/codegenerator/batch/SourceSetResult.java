@@ -0,0 +1,21 @@
+package io.github.muehmar.codegenerator.batch;
+
+import ch.bluecare.commons.data.PList;
+import java.nio.file.Path;
+import java.time.Duration;
+import lombok.Value;
+
+/** Files of a {@link GeneratedSourceSet} affected by a write, each sorted by path. */
+@Value
+public class SourceSetResult {
+  /** Files which were created or whose content changed. */
+  PList<Path> written;
+
+  /** Files whose content did not change and which were therefore not touched. */
+  PList<Path> unchanged;
+
+  /** Previously generated files which were not produced anymore. */
+  PList<Path> deleted;
+
+  Duration duration;
+}
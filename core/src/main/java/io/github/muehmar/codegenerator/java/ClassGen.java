@@ -3,6 +3,7 @@ package io.github.muehmar.codegenerator.java;
 import ch.bluecare.commons.data.PList;
 import io.github.muehmar.codegenerator.Generator;
 import io.github.muehmar.codegenerator.util.Strings;
+import io.github.muehmar.codegenerator.writer.Template;
 import io.github.muehmar.codegenerator.writer.Writer;
 import io.github.muehmar.pojobuilder.annotations.FieldBuilder;
 import io.github.muehmar.pojobuilder.annotations.PojoBuilder;
@@ -12,6 +13,8 @@ import java.util.function.Function;
 
 @PojoBuilder
 public class ClassGen<A, B> implements Generator<A, B> {
+  private static final Template CLASS_START_TEMPLATE = Template.of("%s%s %s%s%s {");
+
   private final ClassType type;
   private final Declaration declaration;
   private final Generator<A, B> packageGen;
@@ -49,9 +52,21 @@ public class ClassGen<A, B> implements Generator<A, B> {
 
   @Override
   public Writer generate(A data, B settings, Writer writer) {
+    return classGenerator().generate(data, settings, writer);
+  }
+
+  /**
+   * Returns the compiled composition of this class generator, i.e. the composition is done only
+   * once for all classes generated with the returned generator.
+   */
+  @Override
+  public Generator<A, B> compile() {
+    return classGenerator().compile();
+  }
 
+  private Generator<A, B> classGenerator() {
     final Generator<A, B> contentGenerator =
-        content.reduce(Generator::append).orElse((d, s, w) -> w);
+        content.reduce(Generator::append).orElse(Generator.emptyGen());
 
     return packageGen()
         .append(this::refs)
@@ -59,8 +74,7 @@ public class ClassGen<A, B> implements Generator<A, B> {
         .append(annotationGens.reduce(Generator::append).orElse(Generator.emptyGen()))
         .append(this::classStart)
         .append(contentGenerator, 1)
-        .append(this::classEnd)
-        .generate(data, settings, writer);
+        .append(this::classEnd);
   }
 
   private Generator<A, B> packageGen() {
@@ -90,7 +104,7 @@ public class ClassGen<A, B> implements Generator<A, B> {
             " " + interfaceInheritance + " ", interfaces.apply(data, settings).mkString(", "), "");
 
     return writer.println(
-        "%s%s %s%s%s {",
+        CLASS_START_TEMPLATE,
         modifiers.apply(data, settings).asStringTrailingWhitespace(),
         type.value,
         createClassName.apply(data, settings),
@@ -274,6 +288,43 @@ public class ClassGen<A, B> implements Generator<A, B> {
     static <A, B> PList<Generator<A, B>> content(Generator<A, B> c1, Generator<A, B> c2) {
       return PList.of(c1, c2);
     }
+
+    /**
+     * Generates the content in parallel in case there are at least {@link
+     * Generator#DEFAULT_PARALLEL_THRESHOLD} generators, see {@link
+     * Generator#appendListParallel(Generator, Function, Generator, int)}.
+     */
+    static <A, B> PList<Generator<A, B>> parallelContent(PList<Generator<A, B>> content) {
+      return parallelContent(content, Generator.DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Generates the content in parallel in case there are at least {@code threshold} generators,
+     * see {@link Generator#appendListParallel(Generator, Function, Generator, int)}.
+     */
+    static <A, B> PList<Generator<A, B>> parallelContent(
+        PList<Generator<A, B>> content, int threshold) {
+      final Generator<BoundContent<A, B>, B> boundContentGen =
+          (bound, settings, writer) -> bound.gen.generate(bound.data, settings, writer);
+      return PList.single(
+          Generator.<A, B>emptyGen()
+              .appendListParallel(
+                  boundContentGen,
+                  data -> content.map(gen -> new BoundContent<>(gen, data)),
+                  Generator.emptyGen(),
+                  threshold));
+    }
+  }
+
+  /** Content generator together with the data it is executed for. */
+  private static final class BoundContent<A, B> {
+    private final Generator<A, B> gen;
+    private final A data;
+
+    private BoundContent(Generator<A, B> gen, A data) {
+      this.gen = gen;
+      this.data = data;
+    }
   }
 
   public enum Declaration {
@@ -2,6 +2,7 @@ package io.github.muehmar.codegenerator.java;
 
 import ch.bluecare.commons.data.PList;
 import io.github.muehmar.codegenerator.Generator;
+import io.github.muehmar.codegenerator.writer.Template;
 import io.github.muehmar.codegenerator.writer.Writer;
 import io.github.muehmar.pojobuilder.annotations.FieldBuilder;
 import io.github.muehmar.pojobuilder.annotations.PojoBuilder;
@@ -12,6 +13,10 @@ import lombok.Value;
 
 @PojoBuilder
 public class ConstructorGen<A, B> implements Generator<A, B> {
+  private static final Template ARGUMENT_TEMPLATE = Template.of("%s %s");
+  private static final Template SIGNATURE_TEMPLATE = Template.of("%s%s(%s) {");
+  private static final Template MEMBER_ASSIGNMENT_TEMPLATE = Template.of("this.%s = %s;");
+
   private final BiFunction<A, B, JavaModifiers> createModifiers;
   private final BiFunction<A, B, String> createClassName;
   private final BiFunction<A, B, PList<Argument>> createArguments;
@@ -35,12 +40,12 @@ public class ConstructorGen<A, B> implements Generator<A, B> {
               final String arguments =
                   createArguments
                       .apply(data, settings)
-                      .map(arg -> String.format("%s %s", arg.type, arg.name))
+                      .map(arg -> ARGUMENT_TEMPLATE.format(arg.type, arg.name))
                       .mkString(", ");
               final String className = createClassName.apply(data, settings);
               final JavaModifiers modifiers = createModifiers.apply(data, settings);
               return w.print(
-                  "%s%s(%s) {", modifiers.asStringTrailingWhitespace(), className, arguments);
+                  SIGNATURE_TEMPLATE, modifiers.asStringTrailingWhitespace(), className, arguments);
             })
         .append(contentGenerator, 1)
         .append(w -> w.println("}"))
@@ -148,7 +153,7 @@ public class ConstructorGen<A, B> implements Generator<A, B> {
       return (data, settings, writer) ->
           createArguments
               .apply(data, settings)
-              .map(arg -> String.format("this.%s = %s;", arg.name, arg.name))
+              .map(arg -> MEMBER_ASSIGNMENT_TEMPLATE.format(arg.name, arg.name))
               .foldLeft(writer, Writer::println);
     }
 
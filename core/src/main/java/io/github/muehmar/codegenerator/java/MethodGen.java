@@ -5,6 +5,7 @@ import static io.github.muehmar.codegenerator.writer.Writer.javaWriter;
 import ch.bluecare.commons.data.PList;
 import io.github.muehmar.codegenerator.Generator;
 import io.github.muehmar.codegenerator.util.Strings;
+import io.github.muehmar.codegenerator.writer.Template;
 import io.github.muehmar.codegenerator.writer.Writer;
 import io.github.muehmar.pojobuilder.annotations.FieldBuilder;
 import io.github.muehmar.pojobuilder.annotations.OptionalDetection;
@@ -17,6 +18,9 @@ import lombok.Value;
 
 @PojoBuilder(optionalDetection = OptionalDetection.NONE)
 public class MethodGen<A, B> implements Generator<A, B> {
+  private static final Template ARGUMENT_TEMPLATE = Template.of("%s %s");
+  private static final Template SIGNATURE_TEMPLATE = Template.of("%s%s%s %s(%s)%s%s");
+
   private final BiFunction<A, B, JavaModifiers> createModifiers;
   private final BiFunction<A, B, PList<String>> createGenericTypeParameters;
   private final Generator<A, B> createReturnType;
@@ -56,7 +60,7 @@ public class MethodGen<A, B> implements Generator<A, B> {
               final String arguments =
                   createArguments
                       .apply(data, settings)
-                      .map(arg -> String.format("%s %s", arg.type, arg.name))
+                      .map(arg -> ARGUMENT_TEMPLATE.format(arg.type, arg.name))
                       .mkString(", ");
               final Writer exceptionsWriter =
                   createThrownExceptions.generate(data, settings, javaWriter());
@@ -65,7 +69,7 @@ public class MethodGen<A, B> implements Generator<A, B> {
                   Strings.surroundIfNotEmpty(" throws ", exceptions.trim(), "");
               final String openingBracket = contentGenerator.isPresent() ? " {" : ";";
               return w.print(
-                      "%s%s%s %s(%s)%s%s",
+                      SIGNATURE_TEMPLATE,
                       modifiers.asStringTrailingWhitespace(),
                       genericTypeParameters,
                       returnTypeWriter.asString(),
@@ -0,0 +1,70 @@
+package io.github.muehmar.codegenerator.metrics;
+
+/** Passes all events to two instances, see {@link GenerationMetrics#and(GenerationMetrics)}. */
+final class CompositeGenerationMetrics implements GenerationMetrics {
+  private final GenerationMetrics first;
+  private final GenerationMetrics second;
+
+  CompositeGenerationMetrics(GenerationMetrics first, GenerationMetrics second) {
+    this.first = first;
+    this.second = second;
+  }
+
+  @Override
+  public void writerAllocated() {
+    first.writerAllocated();
+    second.writerAllocated();
+  }
+
+  @Override
+  public void refsDeduplicated(int count) {
+    first.refsDeduplicated(count);
+    second.refsDeduplicated(count);
+  }
+
+  @Override
+  public Object begin(Operation operation) {
+    return new Context(first.begin(operation), second.begin(operation));
+  }
+
+  @Override
+  public void refsResolved(Object context, int refs, int formattedRefs, long nanos) {
+    final Context c = (Context) context;
+    first.refsResolved(c.first, refs, formattedRefs, nanos);
+    second.refsResolved(c.second, refs, formattedRefs, nanos);
+  }
+
+  @Override
+  public void rendered(Object context, int lines, long characters, int refs, long nanos) {
+    final Context c = (Context) context;
+    first.rendered(c.first, lines, characters, refs, nanos);
+    second.rendered(c.second, lines, characters, refs, nanos);
+  }
+
+  @Override
+  public void fileGenerated(
+      Object context, String file, int lines, long bytes, int refs, long nanos) {
+    final Context c = (Context) context;
+    first.fileGenerated(c.first, file, lines, bytes, refs, nanos);
+    second.fileGenerated(c.second, file, lines, bytes, refs, nanos);
+  }
+
+  @Override
+  public void generated(
+      Object context, String name, int lines, long characters, int refs, long nanos) {
+    final Context c = (Context) context;
+    first.generated(c.first, name, lines, characters, refs, nanos);
+    second.generated(c.second, name, lines, characters, refs, nanos);
+  }
+
+  /** The contexts returned by both instances for an operation. */
+  private static final class Context {
+    private final Object first;
+    private final Object second;
+
+    private Context(Object first, Object second) {
+      this.first = first;
+      this.second = second;
+    }
+  }
+}
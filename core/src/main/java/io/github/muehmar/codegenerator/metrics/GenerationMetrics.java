@@ -0,0 +1,123 @@
+package io.github.muehmar.codegenerator.metrics;
+
+import java.util.Objects;
+
+/**
+ * Receives the events of the writers and generators, e.g. to collect metrics of a long-running
+ * process which generates code. At most one instance is installed at a time, see {@link
+ * #install(GenerationMetrics)}. While no instance is installed, the writers and generators only
+ * check whether there is an installed instance.
+ *
+ * <p>The methods are called on the generating threads and must therefore be thread safe and cheap.
+ * The operations with a duration are announced with {@link #begin(Operation)} before they start,
+ * e.g. to begin an event of a profiler. All methods do nothing by default.
+ *
+ * @see InProcessGenerationMetrics
+ */
+public interface GenerationMetrics {
+
+  /** Called for every created writer, builder or streaming writer. */
+  default void writerAllocated() {}
+
+  /** Called in case refs are added to a writer which contains the refs already. */
+  default void refsDeduplicated(int count) {}
+
+  /**
+   * Called before an operation starts on the current thread. The returned context is passed to the
+   * method reporting the operation after it completed, which is called on the same thread. An
+   * operation which fails or is skipped, e.g. an unchanged file which is not written, is not
+   * reported. Returns null by default.
+   */
+  default Object begin(Operation operation) {
+    return null;
+  }
+
+  /**
+   * Called after the refs of a writer were filtered and formatted with its {@link
+   * io.github.muehmar.codegenerator.writer.RefWriter}, e.g. to import statements.
+   *
+   * @param context the context returned by {@link #begin(Operation)}
+   * @param refs number of distinct refs of the writer
+   * @param formattedRefs number of refs remaining after filtering
+   * @param nanos time used to filter and format the refs
+   */
+  default void refsResolved(Object context, int refs, int formattedRefs, long nanos) {}
+
+  /**
+   * Called after the content of a writer was rendered to a string or to a channel. This includes
+   * temporary writers rendered by generators, e.g. the return type of a method, i.e. the number of
+   * renders is not the number of generated files, see {@link #fileGenerated}.
+   *
+   * @param context the context returned by {@link #begin(Operation)}
+   * @param lines number of rendered lines including the refs
+   * @param characters number of rendered characters including the newlines
+   * @param refs number of rendered refs
+   * @param nanos time used to render the content
+   */
+  default void rendered(Object context, int lines, long characters, int refs, long nanos) {}
+
+  /**
+   * Called once for every file written by a {@link
+   * io.github.muehmar.codegenerator.batch.GenerationBatch}, a {@link
+   * io.github.muehmar.codegenerator.batch.GeneratedSourceSet} or a {@link
+   * io.github.muehmar.codegenerator.batch.SourceArchive}. Unchanged files which are not written
+   * are not reported.
+   *
+   * @param context the context returned by {@link #begin(Operation)}
+   * @param file path of the written file, the path of an entry of an archive is appended to the
+   *     path of the archive separated by {@code !/}
+   * @param lines number of lines of the generated content
+   * @param bytes size of the written content
+   * @param refs number of distinct refs of the generated content
+   * @param nanos time used to write the file, including the generation of the content in case of a
+   *     batch
+   */
+  default void fileGenerated(
+      Object context, String file, int lines, long bytes, int refs, long nanos) {}
+
+  /**
+   * Called after a generator created with {@link
+   * io.github.muehmar.codegenerator.Generator#named(String)} was executed.
+   *
+   * @param context the context returned by {@link #begin(Operation)}
+   * @param name name of the generator
+   * @param lines number of lines added by the generator
+   * @param characters number of characters added by the generator without the line separators
+   * @param refs number of distinct refs added by the generator
+   * @param nanos time used to execute the generator
+   */
+  default void generated(
+      Object context, String name, int lines, long characters, int refs, long nanos) {}
+
+  /** Returns an instance which passes all events to {@code this} and then to {@code other}. */
+  default GenerationMetrics and(GenerationMetrics other) {
+    return new CompositeGenerationMetrics(this, other);
+  }
+
+  /** Installs the given instance, which replaces a previously installed instance. */
+  static void install(GenerationMetrics metrics) {
+    InstalledMetrics.instance = Objects.requireNonNull(metrics);
+  }
+
+  /** Removes the installed instance. */
+  static void uninstall() {
+    InstalledMetrics.instance = null;
+  }
+
+  /** Returns the installed instance or null in case no instance is installed. */
+  static GenerationMetrics installed() {
+    return InstalledMetrics.instance;
+  }
+
+  /** Operations announced with {@link #begin(Operation)}. */
+  enum Operation {
+    /** Reported with {@link #refsResolved}. */
+    RESOLVE_REFS,
+    /** Reported with {@link #rendered}. */
+    RENDER,
+    /** Reported with {@link #fileGenerated}. */
+    GENERATE_FILE,
+    /** Reported with {@link #generated}. */
+    GENERATE
+  }
+}
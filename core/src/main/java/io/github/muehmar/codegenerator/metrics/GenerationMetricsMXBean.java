@@ -0,0 +1,38 @@
+package io.github.muehmar.codegenerator.metrics;
+
+/**
+ * Management interface of the {@link InProcessGenerationMetrics}, registered in the platform MBean
+ * server with the name {@link InProcessGenerationMetrics#OBJECT_NAME}.
+ */
+public interface GenerationMetricsMXBean {
+  /** Number of files written, see {@link GenerationMetrics#fileGenerated}. */
+  long getFilesRendered();
+
+  /** Number of lines of the written files. */
+  long getLinesRendered();
+
+  /** Number of bytes of the written files. */
+  long getBytesRendered();
+
+  /**
+   * Number of renders of a writer including temporary writers, see {@link
+   * GenerationMetrics#rendered}.
+   */
+  long getWriterRenders();
+
+  long getRefsDeduplicated();
+
+  long getWritersAllocated();
+
+  /** Durations of generating and writing a file, see {@link GenerationMetrics#fileGenerated}. */
+  LatencySummary getFileLatency();
+
+  /** Durations of rendering the content of a writer, see {@link GenerationMetrics#rendered}. */
+  LatencySummary getWriterRenderLatency();
+
+  /** Durations of the executions of all named generators. */
+  LatencySummary getGenerateLatency();
+
+  /** Resets all counters and histograms. */
+  void reset();
+}
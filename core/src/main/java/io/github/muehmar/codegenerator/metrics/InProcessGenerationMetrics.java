@@ -0,0 +1,173 @@
+package io.github.muehmar.codegenerator.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * {@link GenerationMetrics} collecting counters and latency histograms in memory. The values can
+ * be read directly or via JMX, e.g. with jconsole, after registering the instance in the platform
+ * MBean server with {@link #registerPlatformMBean()}.
+ *
+ * <p>Typical usage in a long-running process:
+ *
+ * <pre>{@code
+ * InProcessGenerationMetrics.create().install().registerPlatformMBean();
+ * }</pre>
+ */
+public final class InProcessGenerationMetrics
+    implements GenerationMetrics, GenerationMetricsMXBean {
+  public static final String OBJECT_NAME =
+      "io.github.muehmar.codegenerator:type=GenerationMetrics";
+
+  private final LongAdder filesRendered = new LongAdder();
+  private final LongAdder linesRendered = new LongAdder();
+  private final LongAdder bytesRendered = new LongAdder();
+  private final LongAdder writerRenders = new LongAdder();
+  private final LongAdder refsDeduplicated = new LongAdder();
+  private final LongAdder writersAllocated = new LongAdder();
+  private final LatencyHistogram fileLatency = new LatencyHistogram();
+  private final LatencyHistogram writerRenderLatency = new LatencyHistogram();
+  private final LatencyHistogram generateLatency = new LatencyHistogram();
+
+  private InProcessGenerationMetrics() {}
+
+  public static InProcessGenerationMetrics create() {
+    return new InProcessGenerationMetrics();
+  }
+
+  /** Installs this instance, see {@link GenerationMetrics#install(GenerationMetrics)}. */
+  public InProcessGenerationMetrics install() {
+    GenerationMetrics.install(this);
+    return this;
+  }
+
+  /**
+   * Registers this instance in the platform MBean server with the name {@link #OBJECT_NAME}. A
+   * previously registered instance is replaced.
+   *
+   * @throws IllegalStateException if the registration fails
+   */
+  public InProcessGenerationMetrics registerPlatformMBean() {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      final ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+    } catch (JMException e) {
+      throw new IllegalStateException("Unable to register the MBean " + OBJECT_NAME, e);
+    }
+    return this;
+  }
+
+  /**
+   * Removes the instance registered with the name {@link #OBJECT_NAME} from the platform MBean
+   * server, does nothing in case no instance is registered.
+   *
+   * @throws IllegalStateException if the removal fails
+   */
+  public static void unregisterPlatformMBean() {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      final ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    } catch (JMException e) {
+      throw new IllegalStateException("Unable to unregister the MBean " + OBJECT_NAME, e);
+    }
+  }
+
+  @Override
+  public void writerAllocated() {
+    writersAllocated.increment();
+  }
+
+  @Override
+  public void refsDeduplicated(int count) {
+    refsDeduplicated.add(count);
+  }
+
+  @Override
+  public void rendered(Object context, int lines, long characters, int refs, long nanos) {
+    writerRenders.increment();
+    writerRenderLatency.record(nanos);
+  }
+
+  @Override
+  public void fileGenerated(
+      Object context, String file, int lines, long bytes, int refs, long nanos) {
+    filesRendered.increment();
+    linesRendered.add(lines);
+    bytesRendered.add(bytes);
+    fileLatency.record(nanos);
+  }
+
+  @Override
+  public void generated(
+      Object context, String name, int lines, long characters, int refs, long nanos) {
+    generateLatency.record(nanos);
+  }
+
+  @Override
+  public long getFilesRendered() {
+    return filesRendered.sum();
+  }
+
+  @Override
+  public long getLinesRendered() {
+    return linesRendered.sum();
+  }
+
+  @Override
+  public long getBytesRendered() {
+    return bytesRendered.sum();
+  }
+
+  @Override
+  public long getWriterRenders() {
+    return writerRenders.sum();
+  }
+
+  @Override
+  public long getRefsDeduplicated() {
+    return refsDeduplicated.sum();
+  }
+
+  @Override
+  public long getWritersAllocated() {
+    return writersAllocated.sum();
+  }
+
+  @Override
+  public LatencySummary getFileLatency() {
+    return fileLatency.summary();
+  }
+
+  @Override
+  public LatencySummary getWriterRenderLatency() {
+    return writerRenderLatency.summary();
+  }
+
+  @Override
+  public LatencySummary getGenerateLatency() {
+    return generateLatency.summary();
+  }
+
+  @Override
+  public void reset() {
+    filesRendered.reset();
+    linesRendered.reset();
+    bytesRendered.reset();
+    writerRenders.reset();
+    refsDeduplicated.reset();
+    writersAllocated.reset();
+    fileLatency.reset();
+    writerRenderLatency.reset();
+    generateLatency.reset();
+  }
+}
@@ -0,0 +1,8 @@
+package io.github.muehmar.codegenerator.metrics;
+
+/** Holds the instance installed with {@link GenerationMetrics#install(GenerationMetrics)}. */
+final class InstalledMetrics {
+  static volatile GenerationMetrics instance;
+
+  private InstalledMetrics() {}
+}
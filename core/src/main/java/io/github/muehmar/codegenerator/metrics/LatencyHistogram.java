@@ -0,0 +1,92 @@
+package io.github.muehmar.codegenerator.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of durations in nanoseconds. Every power of two is divided into four
+ * buckets, i.e. the percentiles are the upper bound of a bucket and exceed the recorded value by
+ * at most 25 percent.
+ */
+final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  void record(long nanos) {
+    final long value = Math.max(0, nanos);
+    buckets[bucket(value)].increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  void reset() {
+    for (LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+    sum.reset();
+    max.reset();
+  }
+
+  LatencySummary summary() {
+    final long[] counts = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+    final double mean = total == 0 ? 0 : (double) sum.sum() / total;
+    return new LatencySummary(
+        total,
+        mean / 1000,
+        percentile(counts, total, 0.5) / 1000.0,
+        percentile(counts, total, 0.9) / 1000.0,
+        percentile(counts, total, 0.99) / 1000.0,
+        max.get() / 1000.0);
+  }
+
+  private static long percentile(long[] counts, long total, double quantile) {
+    if (total == 0) {
+      return 0;
+    }
+    final long rank = (long) Math.ceil(quantile * total);
+    long cumulated = 0;
+    for (int i = 0; i < counts.length; i++) {
+      cumulated += counts[i];
+      if (cumulated >= rank) {
+        return upperBound(i);
+      }
+    }
+    return upperBound(counts.length - 1);
+  }
+
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    final int exponent = 63 - Long.numberOfLeadingZeros(value);
+    final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) | subBucket;
+  }
+
+  static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    final int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+    final long subBucket = bucket & (SUB_BUCKETS - 1);
+    final long lowerBound = (SUB_BUCKETS | subBucket) << shift;
+    final long upperBound = lowerBound + (1L << shift) - 1;
+    return upperBound < 0 ? Long.MAX_VALUE : upperBound;
+  }
+}
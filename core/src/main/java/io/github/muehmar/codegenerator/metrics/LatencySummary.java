@@ -0,0 +1,14 @@
+package io.github.muehmar.codegenerator.metrics;
+
+import lombok.Value;
+
+/** Summary of the recorded durations in microseconds, see {@link InProcessGenerationMetrics}. */
+@Value
+public class LatencySummary {
+  long count;
+  double meanMicros;
+  double p50Micros;
+  double p90Micros;
+  double p99Micros;
+  double maxMicros;
+}
@@ -0,0 +1,40 @@
+package io.github.muehmar.codegenerator.writer;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of fixed size heap buffers used to encode the content of writers. Buffers are reused across
+ * threads, the number of retained buffers is bounded.
+ */
+final class ByteBufferPool {
+  static final int BUFFER_SIZE = 16 * 1024;
+  private static final int MAX_POOLED_BUFFERS = 64;
+
+  private static final Queue<ByteBuffer> BUFFERS = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger POOLED_BUFFERS = new AtomicInteger();
+
+  private ByteBufferPool() {}
+
+  static ByteBuffer acquire() {
+    final ByteBuffer buffer = BUFFERS.poll();
+    if (buffer == null) {
+      return ByteBuffer.allocate(BUFFER_SIZE);
+    }
+    POOLED_BUFFERS.decrementAndGet();
+    // called on Buffer, the covariant overrides of ByteBuffer do not exist on Java 8
+    ((Buffer) buffer).clear();
+    return buffer;
+  }
+
+  static void release(ByteBuffer buffer) {
+    if (POOLED_BUFFERS.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+      BUFFERS.offer(buffer);
+    } else {
+      POOLED_BUFFERS.decrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package io.github.muehmar.codegenerator.writer;
+
+import java.util.Arrays;
+
+/**
+ * Indentation strings for a fixed number of spaces per tab. The string for a number of tabs is
+ * created once and cached afterwards.
+ */
+final class Indentation {
+  private static final int INITIAL_CACHE_SIZE = 16;
+  private static final Indentation[] COMMON_INSTANCES = new Indentation[9];
+
+  static {
+    for (int spacesPerTab = 0; spacesPerTab < COMMON_INSTANCES.length; spacesPerTab++) {
+      COMMON_INSTANCES[spacesPerTab] = new Indentation(spacesPerTab);
+    }
+  }
+
+  private final int spacesPerTab;
+  private volatile String[] indents;
+
+  private Indentation(int spacesPerTab) {
+    this.spacesPerTab = spacesPerTab;
+    this.indents = createIndents(spacesPerTab, INITIAL_CACHE_SIZE);
+  }
+
+  static Indentation forSpacesPerTab(int spacesPerTab) {
+    if (spacesPerTab >= 0 && spacesPerTab < COMMON_INSTANCES.length) {
+      return COMMON_INSTANCES[spacesPerTab];
+    }
+    return new Indentation(spacesPerTab);
+  }
+
+  /** Returns the indentation string for the given number of tabs. */
+  String indent(int tabs) {
+    final String[] cached = indents;
+    if (tabs < cached.length) {
+      return cached[tabs];
+    }
+    final String[] grown = createIndents(spacesPerTab, Math.max(tabs + 1, 2 * cached.length));
+    indents = grown;
+    return grown[tabs];
+  }
+
+  boolean sameAs(Indentation other) {
+    return this == other || spacesPerTab == other.spacesPerTab;
+  }
+
+  private static String[] createIndents(int spacesPerTab, int size) {
+    final String[] indents = new String[size];
+    final char[] spaces = new char[spacesPerTab * (size - 1)];
+    Arrays.fill(spaces, ' ');
+    for (int tabs = 0; tabs < size; tabs++) {
+      indents[tabs] = new String(spaces, 0, spacesPerTab * tabs);
+    }
+    return indents;
+  }
+}
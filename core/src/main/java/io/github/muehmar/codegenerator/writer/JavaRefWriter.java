@@ -5,9 +5,12 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 
 public class JavaRefWriter implements RefWriter {
+  private static final Comparator<String> SORT_COMPARATOR =
+      Comparator.comparing(Function.identity());
+
   @Override
   public Comparator<String> sortComparator() {
-    return Comparator.comparing(Function.identity());
+    return SORT_COMPARATOR;
   }
 
   @Override
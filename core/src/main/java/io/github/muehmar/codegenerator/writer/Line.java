@@ -1,67 +1,217 @@
 package io.github.muehmar.codegenerator.writer;
 
 import ch.bluecare.commons.data.PList;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Predicate;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+/**
+ * Immutable line of the output. The characters of the fragments are stored in a single buffer,
+ * appending to the line with the most characters of a buffer writes directly into the free space of
+ * the buffer, i.e. lines created by successive appends share the same buffer. The end of the
+ * content without the trailing blank fragments is tracked while appending.
+ */
 public class Line {
-  private final PList<String> fragments;
+  private static final int MIN_CAPACITY = 16;
+  private static final Line EMPTY = new Line(Buffer.EMPTY, 0, 0, false, 0, null);
 
-  private Line(PList<String> fragments) {
-    this.fragments = fragments;
+  private final Buffer buffer;
+
+  /** Number of characters of this line in {@code buffer}. */
+  private final int length;
+
+  /** End of the last fragment which is not blank, zero in case there is no such fragment. */
+  private final int contentEnd;
+
+  private final boolean hasFragments;
+
+  /** Number of tabs in front of the fragments, rendered with {@code indentation}. */
+  private final int tabs;
+
+  private final Indentation indentation;
+
+  private Line(
+      Buffer buffer,
+      int length,
+      int contentEnd,
+      boolean hasFragments,
+      int tabs,
+      Indentation indentation) {
+    this.buffer = buffer;
+    this.length = length;
+    this.contentEnd = contentEnd;
+    this.hasFragments = hasFragments;
+    this.tabs = tabs;
+    this.indentation = indentation;
   }
 
   public static Line ofString(String fragment) {
-    return new Line(PList.single(fragment));
+    return EMPTY.append(fragment);
   }
 
   public static Line empty() {
-    return new Line(PList.empty());
+    return EMPTY;
+  }
+
+  /** Returns a new empty line which is not the same instance as any other line. */
+  static Line placeholder() {
+    return new Line(Buffer.EMPTY, 0, 0, false, 0, null);
   }
 
   public Line append(String fragment) {
-    return new Line(fragments.cons(fragment));
+    final int fragmentLength = fragment.length();
+    final int newLength = length + fragmentLength;
+    final Buffer target =
+        buffer.claim(length, newLength) ? buffer : buffer.copy(length, grownCapacity(newLength));
+    fragment.getChars(0, fragmentLength, target.chars, length);
+    final int newContentEnd = isBlank(fragment) ? contentEnd : newLength;
+    return new Line(target, newLength, newContentEnd, true, tabs, indentation);
+  }
+
+  private static int grownCapacity(int length) {
+    return Math.max(MIN_CAPACITY, length + (length >> 1));
   }
 
   public Line prepend(String fragment) {
-    return new Line(fragments.add(fragment));
+    return prepend(PList.single(fragment));
   }
 
   public Line prepend(PList<String> fragments) {
-    return new Line(this.fragments.concat(fragments.reverse()));
+    Line line = EMPTY;
+    for (String fragment : fragments) {
+      line = line.append(fragment);
+    }
+    return line.appendMaterialized(this);
+  }
+
+  /** Appends the fragments of the given line including its indentation as fragment. */
+  private Line appendMaterialized(Line other) {
+    final Line indented = other.tabs > 0 ? append(other.indentation.indent(other.tabs)) : this;
+    return indented.appendFragments(other);
+  }
+
+  /**
+   * Appends the fragments of the given line without its indentation, the indentation of this line
+   * is kept.
+   */
+  Line appendFragments(Line other) {
+    if (!other.hasFragments) {
+      return this;
+    }
+    final int newLength = length + other.length;
+    final Buffer target = buffer.copy(length, newLength);
+    System.arraycopy(other.buffer.chars, 0, target.chars, length, other.length);
+    target.used = newLength;
+    final int newContentEnd = other.contentEnd > 0 ? length + other.contentEnd : contentEnd;
+    return new Line(target, newLength, newContentEnd, true, tabs, indentation);
+  }
+
+  /**
+   * Returns this line indented with the given number of tabs. The indentation is stored as number
+   * and the string is created only when rendering the line.
+   */
+  Line indent(int tabs, Indentation indentation) {
+    if (tabs <= 0) {
+      return this;
+    }
+    if (this.tabs == 0 || this.indentation.sameAs(indentation)) {
+      return new Line(buffer, length, contentEnd, hasFragments, this.tabs + tabs, indentation);
+    }
+    final Line materialized = EMPTY.appendMaterialized(this);
+    return new Line(
+        materialized.buffer,
+        materialized.length,
+        materialized.contentEnd,
+        materialized.hasFragments,
+        tabs,
+        indentation);
   }
 
   public Line removeTrailingBlankFragments() {
-    return new Line(fragments.filter(dropWhileBlank()));
+    if (contentEnd == 0) {
+      return EMPTY;
+    }
+    if (contentEnd == length) {
+      return this;
+    }
+    return new Line(buffer, contentEnd, contentEnd, true, tabs, indentation);
+  }
+
+  /** Returns the length of this line without the trailing blank fragments. */
+  int renderedLength() {
+    return contentEnd > 0 && tabs > 0 ? contentEnd + indentation.indent(tabs).length() : contentEnd;
+  }
+
+  /** Passes the content of this line without the trailing blank fragments to the target. */
+  void render(CharTarget target) {
+    if (contentEnd > 0) {
+      if (tabs > 0) {
+        target.append(indentation.indent(tabs));
+      }
+      target.append(buffer.chars, 0, contentEnd);
+    }
   }
 
-  private static Predicate<String> dropWhileBlank() {
-    final AtomicBoolean nonBlankSeen = new AtomicBoolean(false);
-    return in -> {
-      if (nonBlankSeen.get() || in.trim().length() > 0) {
-        nonBlankSeen.set(true);
-        return true;
-      } else {
+  private static boolean isBlank(String fragment) {
+    for (int i = 0; i < fragment.length(); i++) {
+      if (fragment.charAt(i) > ' ') {
         return false;
       }
-    };
+    }
+    return true;
   }
 
   public StringBuilder asStringBuilder() {
-    final StringBuilder sb = new StringBuilder();
-    fragments.reverse().forEach(sb::append);
-    return sb;
+    final String indent = tabs > 0 ? indentation.indent(tabs) : "";
+    return new StringBuilder(indent.length() + length)
+        .append(indent)
+        .append(buffer.chars, 0, length);
   }
 
   public boolean isEmpty() {
-    return fragments.isEmpty();
+    return !hasFragments && tabs == 0;
   }
 
   public boolean nonEmpty() {
-    return fragments.nonEmpty();
+    return !isEmpty();
   }
 
   public String asString() {
     return asStringBuilder().toString();
   }
+
+  /** Receives the rendered characters of lines. */
+  interface CharTarget {
+    void append(String text);
+
+    void append(char[] chars, int offset, int length);
+  }
+
+  /**
+   * Characters shared by lines. The number of used characters is only increased, a line may append
+   * in place only if it ends at the used characters, i.e. no other line was appended to the buffer.
+   */
+  private static final class Buffer {
+    private static final AtomicIntegerFieldUpdater<Buffer> USED =
+        AtomicIntegerFieldUpdater.newUpdater(Buffer.class, "used");
+    private static final Buffer EMPTY = new Buffer(0);
+
+    private final char[] chars;
+    private volatile int used;
+
+    private Buffer(int capacity) {
+      this.chars = new char[capacity];
+    }
+
+    /** Reserves the characters from {@code from} to {@code to}, returns false if not possible. */
+    private boolean claim(int from, int to) {
+      return to <= chars.length && (from == to || USED.compareAndSet(this, from, to));
+    }
+
+    /** Returns a new buffer with the given capacity containing the first characters. */
+    private Buffer copy(int length, int capacity) {
+      final Buffer copy = new Buffer(capacity);
+      System.arraycopy(chars, 0, copy.chars, 0, length);
+      copy.used = length;
+      return copy;
+    }
+  }
 }
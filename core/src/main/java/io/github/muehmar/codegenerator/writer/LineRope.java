@@ -0,0 +1,422 @@
+package io.github.muehmar.codegenerator.writer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Persistent sequence of {@link Line}'s in document order. It is implemented as a height balanced
+ * rope whose leaves are small arrays of lines. Appending a line, concatenating two ropes and
+ * replacing the last line are O(log n), an existing rope is never modified.
+ *
+ * <p>Indenting a rope is O(1), the indentation is stored in a node and pushed down to the children
+ * only if the structure of the rope changes at this node.
+ */
+abstract class LineRope implements Iterable<Line> {
+  private static final int MAX_LEAF_SIZE = 32;
+  private static final LineRope EMPTY = new Leaf(new Line[0]);
+
+  private LineRope() {}
+
+  static LineRope empty() {
+    return EMPTY;
+  }
+
+  static LineRope single(Line line) {
+    return new Leaf(new Line[] {line});
+  }
+
+  /** Creates a rope of the first {@code count} lines of the given array, the array is copied. */
+  static LineRope copyOf(Line[] lines, int count) {
+    LineRope rope = EMPTY;
+    for (int start = 0; start < count; start += MAX_LEAF_SIZE) {
+      final int end = Math.min(start + MAX_LEAF_SIZE, count);
+      rope = join(rope, new Leaf(Arrays.copyOfRange(lines, start, end)));
+    }
+    return rope;
+  }
+
+  /** Concatenates the given ropes by joining them pairwise, i.e. as a balanced tree. */
+  static LineRope concatAll(List<LineRope> ropes) {
+    return concatAll(ropes, 0, ropes.size());
+  }
+
+  private static LineRope concatAll(List<LineRope> ropes, int from, int to) {
+    if (to - from == 0) {
+      return EMPTY;
+    }
+    if (to - from == 1) {
+      return ropes.get(from);
+    }
+    final int middle = (from + to) >>> 1;
+    return join(concatAll(ropes, from, middle), concatAll(ropes, middle, to));
+  }
+
+  abstract int size();
+
+  abstract int height();
+
+  abstract Line get(int index);
+
+  /** Returns a rope containing the first {@code count} lines of this rope. */
+  abstract LineRope take(int count);
+
+  /** Returns a rope without the first {@code count} lines of this rope. */
+  abstract LineRope drop(int count);
+
+  /** Returns a rope where the last line is replaced by the given line. */
+  abstract LineRope withLast(Line line);
+
+  /** Returns a rope where every line is indented with the given number of tabs. */
+  final LineRope indent(int tabs, Indentation indentation) {
+    if (tabs <= 0 || isEmpty()) {
+      return this;
+    }
+    if (this instanceof Indented) {
+      final Indented indented = (Indented) this;
+      if (indented.indentation.sameAs(indentation)) {
+        return new Indented(indented.rope, indented.tabs + tabs, indentation);
+      }
+    }
+    return new Indented(this, tabs, indentation);
+  }
+
+  final boolean isEmpty() {
+    return size() == 0;
+  }
+
+  final Line last() {
+    return get(size() - 1);
+  }
+
+  final LineRope add(Line line) {
+    return concat(single(line));
+  }
+
+  final LineRope dropLast(int count) {
+    return take(size() - count);
+  }
+
+  final LineRope concat(LineRope other) {
+    return join(this, other);
+  }
+
+  @Override
+  public Iterator<Line> iterator() {
+    return new RopeIterator(this);
+  }
+
+  @Override
+  public void forEach(Consumer<? super Line> action) {
+    if (this instanceof Leaf) {
+      for (Line line : ((Leaf) this).lines) {
+        action.accept(line);
+      }
+    } else if (this instanceof Node) {
+      final Node node = (Node) this;
+      node.left.forEach(action);
+      node.right.forEach(action);
+    } else {
+      final Indented indented = (Indented) this;
+      indented.rope.forEach(
+          line -> action.accept(line.indent(indented.tabs, indented.indentation)));
+    }
+  }
+
+  /**
+   * Pushes the indentation of an indented rope down to its children, i.e. the returned rope is
+   * either a {@link Leaf} or a {@link Node}.
+   */
+  private static LineRope expose(LineRope rope) {
+    if (!(rope instanceof Indented)) {
+      return rope;
+    }
+    final Indented indented = (Indented) rope;
+    final LineRope inner = expose(indented.rope);
+    if (inner instanceof Node) {
+      final Node node = (Node) inner;
+      return new Node(
+          node.left.indent(indented.tabs, indented.indentation),
+          node.right.indent(indented.tabs, indented.indentation));
+    }
+    final Line[] lines = ((Leaf) inner).lines.clone();
+    for (int i = 0; i < lines.length; i++) {
+      lines[i] = lines[i].indent(indented.tabs, indented.indentation);
+    }
+    return new Leaf(lines);
+  }
+
+  private static LineRope join(LineRope left, LineRope right) {
+    if (left.isEmpty()) {
+      return right;
+    }
+    if (right.isEmpty()) {
+      return left;
+    }
+    if (left instanceof Leaf
+        && right instanceof Leaf
+        && left.size() + right.size() <= MAX_LEAF_SIZE) {
+      return Leaf.merge((Leaf) left, (Leaf) right);
+    }
+
+    final int leftHeight = left.height();
+    final int rightHeight = right.height();
+    if (leftHeight > rightHeight + 1) {
+      final Node leftNode = (Node) expose(left);
+      return balance(leftNode.left, join(leftNode.right, right));
+    }
+    if (rightHeight > leftHeight + 1) {
+      final Node rightNode = (Node) expose(right);
+      return balance(join(left, rightNode.left), rightNode.right);
+    }
+    if (left instanceof Node && right instanceof Leaf) {
+      // Keeps the rightmost leaf filled when lines are appended one by one
+      final Node leftNode = (Node) left;
+      if (leftNode.right.size() + right.size() <= MAX_LEAF_SIZE) {
+        return balance(leftNode.left, join(leftNode.right, right));
+      }
+    }
+    return new Node(left, right);
+  }
+
+  /**
+   * Creates a node of two balanced ropes whose heights differ by at most two, applying a single or
+   * double rotation if necessary.
+   */
+  private static LineRope balance(LineRope left, LineRope right) {
+    final int leftHeight = left.height();
+    final int rightHeight = right.height();
+    if (leftHeight > rightHeight + 1) {
+      final Node l = (Node) expose(left);
+      if (l.left.height() >= l.right.height()) {
+        return new Node(l.left, new Node(l.right, right));
+      }
+      final Node lr = (Node) expose(l.right);
+      return new Node(new Node(l.left, lr.left), new Node(lr.right, right));
+    }
+    if (rightHeight > leftHeight + 1) {
+      final Node r = (Node) expose(right);
+      if (r.right.height() >= r.left.height()) {
+        return new Node(new Node(left, r.left), r.right);
+      }
+      final Node rl = (Node) expose(r.left);
+      return new Node(new Node(left, rl.left), new Node(rl.right, r.right));
+    }
+    return new Node(left, right);
+  }
+
+  private static final class Leaf extends LineRope {
+    private final Line[] lines;
+
+    private Leaf(Line[] lines) {
+      this.lines = lines;
+    }
+
+    private static Leaf merge(Leaf left, Leaf right) {
+      final Line[] merged = Arrays.copyOf(left.lines, left.lines.length + right.lines.length);
+      System.arraycopy(right.lines, 0, merged, left.lines.length, right.lines.length);
+      return new Leaf(merged);
+    }
+
+    @Override
+    int size() {
+      return lines.length;
+    }
+
+    @Override
+    int height() {
+      return 0;
+    }
+
+    @Override
+    Line get(int index) {
+      return lines[index];
+    }
+
+    @Override
+    LineRope take(int count) {
+      if (count <= 0) {
+        return EMPTY;
+      }
+      if (count >= lines.length) {
+        return this;
+      }
+      return new Leaf(Arrays.copyOf(lines, count));
+    }
+
+    @Override
+    LineRope drop(int count) {
+      if (count <= 0) {
+        return this;
+      }
+      if (count >= lines.length) {
+        return EMPTY;
+      }
+      return new Leaf(Arrays.copyOfRange(lines, count, lines.length));
+    }
+
+    @Override
+    LineRope withLast(Line line) {
+      final Line[] copy = lines.clone();
+      copy[copy.length - 1] = line;
+      return new Leaf(copy);
+    }
+  }
+
+  private static final class Node extends LineRope {
+    private final LineRope left;
+    private final LineRope right;
+    private final int size;
+    private final int height;
+
+    private Node(LineRope left, LineRope right) {
+      this.left = left;
+      this.right = right;
+      this.size = left.size() + right.size();
+      this.height = Math.max(left.height(), right.height()) + 1;
+    }
+
+    @Override
+    int size() {
+      return size;
+    }
+
+    @Override
+    int height() {
+      return height;
+    }
+
+    @Override
+    Line get(int index) {
+      final int leftSize = left.size();
+      return index < leftSize ? left.get(index) : right.get(index - leftSize);
+    }
+
+    @Override
+    LineRope take(int count) {
+      if (count <= 0) {
+        return EMPTY;
+      }
+      if (count >= size) {
+        return this;
+      }
+      final int leftSize = left.size();
+      if (count <= leftSize) {
+        return left.take(count);
+      }
+      return join(left, right.take(count - leftSize));
+    }
+
+    @Override
+    LineRope drop(int count) {
+      if (count <= 0) {
+        return this;
+      }
+      if (count >= size) {
+        return EMPTY;
+      }
+      final int leftSize = left.size();
+      if (count >= leftSize) {
+        return right.drop(count - leftSize);
+      }
+      return join(left.drop(count), right);
+    }
+
+    @Override
+    LineRope withLast(Line line) {
+      return join(left, right.withLast(line));
+    }
+  }
+
+  private static final class Indented extends LineRope {
+    private final LineRope rope;
+    private final int tabs;
+    private final Indentation indentation;
+
+    private Indented(LineRope rope, int tabs, Indentation indentation) {
+      this.rope = rope;
+      this.tabs = tabs;
+      this.indentation = indentation;
+    }
+
+    @Override
+    int size() {
+      return rope.size();
+    }
+
+    @Override
+    int height() {
+      return rope.height();
+    }
+
+    @Override
+    Line get(int index) {
+      return rope.get(index).indent(tabs, indentation);
+    }
+
+    @Override
+    LineRope take(int count) {
+      if (count >= size()) {
+        return this;
+      }
+      return rope.take(count).indent(tabs, indentation);
+    }
+
+    @Override
+    LineRope drop(int count) {
+      if (count <= 0) {
+        return this;
+      }
+      return rope.drop(count).indent(tabs, indentation);
+    }
+
+    @Override
+    LineRope withLast(Line line) {
+      return join(take(size() - 1), single(line));
+    }
+  }
+
+  private static final class RopeIterator implements Iterator<Line> {
+    private final Deque<LineRope> stack = new ArrayDeque<>();
+    private Leaf leaf;
+    private int index;
+
+    private RopeIterator(LineRope rope) {
+      pushLeftmost(rope);
+    }
+
+    private void pushLeftmost(LineRope rope) {
+      LineRope current = expose(rope);
+      while (current instanceof Node) {
+        final Node node = (Node) current;
+        stack.push(node.right);
+        current = expose(node.left);
+      }
+      leaf = (Leaf) current;
+      index = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (index >= leaf.lines.length) {
+        if (stack.isEmpty()) {
+          return false;
+        }
+        pushLeftmost(stack.pop());
+      }
+      return true;
+    }
+
+    @Override
+    public Line next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return leaf.lines[index++];
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package io.github.muehmar.codegenerator.writer;
+
+/** Cached string representations of small primitive values. */
+final class PrimitiveStrings {
+  private static final int MIN_CACHED_INT = -128;
+  private static final int MAX_CACHED_INT = 1023;
+  private static final String[] INTS = new String[MAX_CACHED_INT - MIN_CACHED_INT + 1];
+  private static final String[] CHARS = new String[128];
+
+  static {
+    for (int i = 0; i < INTS.length; i++) {
+      INTS[i] = Integer.toString(i + MIN_CACHED_INT);
+    }
+    for (char c = 0; c < CHARS.length; c++) {
+      CHARS[c] = String.valueOf(c);
+    }
+  }
+
+  private PrimitiveStrings() {}
+
+  static String of(int value) {
+    if (value >= MIN_CACHED_INT && value <= MAX_CACHED_INT) {
+      return INTS[value - MIN_CACHED_INT];
+    }
+    return Integer.toString(value);
+  }
+
+  static String of(char value) {
+    return value < CHARS.length ? CHARS[value] : String.valueOf(value);
+  }
+}
@@ -0,0 +1,256 @@
+package io.github.muehmar.codegenerator.writer;
+
+import ch.bluecare.commons.data.PList;
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Persistent sorted set of refs. The refs are ordered by the sort comparator of the {@link
+ * RefWriter}, refs which are equal according to the comparator but not equal strings are ordered
+ * by their natural order. Duplicates are removed when a ref is added.
+ *
+ * <p>The set is implemented as treap where the priority of a ref is derived from its hash code,
+ * i.e. the shape of the tree depends only on the contained refs. Adding a ref is O(log n) and the
+ * union of two sets with the same comparator is O(m log(n/m + 1)).
+ */
+final class RefSet implements Iterable<String> {
+  private final Comparator<String> comparator;
+  private final Node root;
+
+  private RefSet(Comparator<String> comparator, Node root) {
+    this.comparator = comparator;
+    this.root = root;
+  }
+
+  static RefSet empty(Comparator<String> comparator) {
+    return new RefSet(comparator, null);
+  }
+
+  /** Returns an empty set with the same comparator. */
+  RefSet emptySet() {
+    return root == null ? this : new RefSet(comparator, null);
+  }
+
+  int size() {
+    return root == null ? 0 : root.size;
+  }
+
+  boolean isEmpty() {
+    return root == null;
+  }
+
+  boolean nonEmpty() {
+    return root != null;
+  }
+
+  RefSet add(String ref) {
+    final Node newRoot = insert(root, ref, priority(ref));
+    if (newRoot == root) {
+      reportDeduplicated(1);
+      return this;
+    }
+    return new RefSet(comparator, newRoot);
+  }
+
+  RefSet addAll(Iterable<String> refs) {
+    Node newRoot = root;
+    int duplicates = 0;
+    for (String ref : refs) {
+      final Node inserted = insert(newRoot, ref, priority(ref));
+      if (inserted == newRoot) {
+        duplicates++;
+      }
+      newRoot = inserted;
+    }
+    reportDeduplicated(duplicates);
+    return newRoot == root ? this : new RefSet(comparator, newRoot);
+  }
+
+  private static void reportDeduplicated(int count) {
+    if (count > 0) {
+      final GenerationMetrics metrics = GenerationMetrics.installed();
+      if (metrics != null) {
+        metrics.refsDeduplicated(count);
+      }
+    }
+  }
+
+  /** Returns the union of both sets, ordered by the comparator of this set. */
+  RefSet union(RefSet other) {
+    if (other.root == null || other.root == root) {
+      return this;
+    }
+    if (root == null && comparator == other.comparator) {
+      return other;
+    }
+    if (comparator != other.comparator) {
+      return addAll(other);
+    }
+    return new RefSet(comparator, union(root, other.root));
+  }
+
+  PList<String> toPList() {
+    PList<String> list = PList.empty();
+    final Iterator<String> reversed = new NodeIterator(root, false);
+    while (reversed.hasNext()) {
+      list = list.cons(reversed.next());
+    }
+    return list;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return new NodeIterator(root, true);
+  }
+
+  @Override
+  public void forEach(Consumer<? super String> action) {
+    forEach(root, action);
+  }
+
+  private static void forEach(Node node, Consumer<? super String> action) {
+    if (node != null) {
+      forEach(node.left, action);
+      action.accept(node.ref);
+      forEach(node.right, action);
+    }
+  }
+
+  private int compare(String a, String b) {
+    final int result = comparator.compare(a, b);
+    return result != 0 ? result : a.compareTo(b);
+  }
+
+  private static int priority(String ref) {
+    int h = ref.hashCode() * 0x9E3779B9;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  private static boolean higherPriority(Node node, int priority, String ref) {
+    return node.priority > priority
+        || (node.priority == priority && node.ref.compareTo(ref) > 0);
+  }
+
+  private Node insert(Node node, String ref, int priority) {
+    if (node == null) {
+      return new Node(ref, priority, null, null);
+    }
+    final int comparison = compare(ref, node.ref);
+    if (comparison == 0) {
+      return node;
+    }
+    if (higherPriority(node, priority, ref)) {
+      if (comparison < 0) {
+        final Node left = insert(node.left, ref, priority);
+        return left == node.left ? node : new Node(node.ref, node.priority, left, node.right);
+      }
+      final Node right = insert(node.right, ref, priority);
+      return right == node.right ? node : new Node(node.ref, node.priority, node.left, right);
+    }
+    final Split split = split(node, ref);
+    return new Node(ref, priority, split.left, split.right);
+  }
+
+  private Node union(Node a, Node b) {
+    if (a == null) {
+      return b;
+    }
+    if (b == null || a == b) {
+      return a;
+    }
+    if (higherPriority(b, a.priority, a.ref)) {
+      final Node tmp = a;
+      a = b;
+      b = tmp;
+    }
+    final Split split = split(b, a.ref);
+    final Node left = union(a.left, split.left);
+    final Node right = union(a.right, split.right);
+    if (left == a.left && right == a.right) {
+      return a;
+    }
+    return new Node(a.ref, a.priority, left, right);
+  }
+
+  /** Splits the tree into the refs smaller and greater than the given ref. */
+  private Split split(Node node, String ref) {
+    if (node == null) {
+      return new Split(null, null);
+    }
+    final int comparison = compare(ref, node.ref);
+    if (comparison == 0) {
+      return new Split(node.left, node.right);
+    }
+    if (comparison < 0) {
+      final Split split = split(node.left, ref);
+      return new Split(split.left, new Node(node.ref, node.priority, split.right, node.right));
+    }
+    final Split split = split(node.right, ref);
+    return new Split(new Node(node.ref, node.priority, node.left, split.left), split.right);
+  }
+
+  private static final class Node {
+    private final String ref;
+    private final int priority;
+    private final Node left;
+    private final Node right;
+    private final int size;
+
+    private Node(String ref, int priority, Node left, Node right) {
+      this.ref = ref;
+      this.priority = priority;
+      this.left = left;
+      this.right = right;
+      this.size = 1 + (left == null ? 0 : left.size) + (right == null ? 0 : right.size);
+    }
+  }
+
+  private static final class Split {
+    private final Node left;
+    private final Node right;
+
+    private Split(Node left, Node right) {
+      this.left = left;
+      this.right = right;
+    }
+  }
+
+  private static final class NodeIterator implements Iterator<String> {
+    private final Deque<Node> stack = new ArrayDeque<>();
+    private final boolean ascending;
+
+    private NodeIterator(Node root, boolean ascending) {
+      this.ascending = ascending;
+      pushPath(root);
+    }
+
+    private void pushPath(Node node) {
+      Node current = node;
+      while (current != null) {
+        stack.push(current);
+        current = ascending ? current.left : current.right;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !stack.isEmpty();
+    }
+
+    @Override
+    public String next() {
+      if (stack.isEmpty()) {
+        throw new NoSuchElementException();
+      }
+      final Node node = stack.pop();
+      pushPath(ascending ? node.right : node.left);
+      return node.ref;
+    }
+  }
+}
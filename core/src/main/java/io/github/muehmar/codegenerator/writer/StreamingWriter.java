@@ -0,0 +1,635 @@
+package io.github.muehmar.codegenerator.writer;
+
+import static io.github.muehmar.codegenerator.writer.WriterSettings.defaultSettings;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mutable counterpart of {@link Writer} which pushes every finished line to a sink instead of
+ * keeping the whole content in memory. The output is the same as {@link Writer#asString()} would
+ * produce for the same sequence of calls, except for the position of refs taken from an appended
+ * writer, see {@link #append(int, Writer)}.
+ *
+ * <p>The refs are collected while writing and printed when this writer gets closed. The position of
+ * {@link #printRefs()} is reserved in the sink and back-patched when closing: a {@link FileChannel}
+ * is patched in place, for other sinks the content following the refs is spooled into a temporary
+ * file. The memory used is therefore bounded by the refs and not by the size of the content.
+ *
+ * <p>Lines are only written once a following non-empty line is finished, which allows {@link
+ * #resetToLastNotEmptyLine()} and {@link #printSingleBlankLine()} to behave like in {@link Writer}.
+ * Closing this writer closes the underlying sink.
+ */
+public final class StreamingWriter implements Closeable {
+  private static final String NEWLINE_STRING = "\n";
+
+  private final Sink sink;
+  private final WriterSettings settings;
+  private final RefWriter refWriter;
+  private final Indentation indentation;
+  private RefSet refs;
+
+  private Line currentLine = Line.empty();
+  private int tabs = 0;
+  private boolean newline = true;
+
+  private Line heldLine = null;
+  private int pendingEmptyLines = 0;
+  private int completedLines = 0;
+
+  private int refsLineNumber = -1;
+  private int emittedLines = 0;
+  private int keptLines = 0;
+  private boolean previousEmpty = false;
+
+  private Patch patch = null;
+  private boolean closed = false;
+
+  private StreamingWriter(Sink sink, RefWriter refWriter, WriterSettings settings) {
+    this.sink = sink;
+    this.settings = settings;
+    this.refWriter = refWriter;
+    this.indentation = Indentation.forSpacesPerTab(settings.getSpacesPerTab());
+    this.refs = RefSet.empty(refWriter.sortComparator());
+    final GenerationMetrics metrics = GenerationMetrics.installed();
+    if (metrics != null) {
+      metrics.writerAllocated();
+    }
+  }
+
+  public static StreamingWriter create(
+      java.io.Writer out, RefWriter refWriter, WriterSettings settings) {
+    return new StreamingWriter(new StreamSink(out), refWriter, settings);
+  }
+
+  public static StreamingWriter create(
+      OutputStream out, Charset charset, RefWriter refWriter, WriterSettings settings) {
+    final java.io.Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset));
+    return new StreamingWriter(new StreamSink(writer), refWriter, settings);
+  }
+
+  /**
+   * Creates a writer which writes to the given channel starting at its current position. The
+   * channel must be readable and writable, as the refs are back-patched in place.
+   */
+  public static StreamingWriter create(
+      FileChannel channel, Charset charset, RefWriter refWriter, WriterSettings settings) {
+    return new StreamingWriter(new ChannelSink(channel, charset), refWriter, settings);
+  }
+
+  public static StreamingWriter javaWriter(java.io.Writer out) {
+    return create(out, new JavaRefWriter(), defaultSettings());
+  }
+
+  public static StreamingWriter javaWriter(OutputStream out) {
+    return create(out, UTF_8, new JavaRefWriter(), defaultSettings());
+  }
+
+  public static StreamingWriter javaWriter(FileChannel channel) {
+    return create(channel, UTF_8, new JavaRefWriter(), defaultSettings());
+  }
+
+  public StreamingWriter tab(int tabs) {
+    this.tabs = tabs;
+    return this;
+  }
+
+  public StreamingWriter ref(String ref) {
+    refs = refs.add(ref);
+    return this;
+  }
+
+  public StreamingWriter refs(Iterable<String> refs) {
+    this.refs = this.refs.addAll(refs);
+    return this;
+  }
+
+  /**
+   * Reserves the current position for the refs, they are printed utilizing the {@link RefWriter}
+   * when closing this writer. The position can only be set once.
+   */
+  public StreamingWriter printRefs() {
+    assertOpen();
+    if (patch != null) {
+      throw new IllegalStateException("Position of the refs is already written to the sink");
+    }
+    refsLineNumber = completedLines + (newline || currentLine == null ? 0 : 1);
+    return this;
+  }
+
+  public StreamingWriter print(String string, Object... args) {
+    return appendToCurrentLine(Template.formatString(string, args));
+  }
+
+  /** Prints the template formatted with the given arguments, see {@link Template#format}. */
+  public StreamingWriter print(Template template, Object... args) {
+    return appendToCurrentLine(template.format(args));
+  }
+
+  public StreamingWriter print(char value) {
+    return appendToCurrentLine(PrimitiveStrings.of(value));
+  }
+
+  public StreamingWriter print(int value) {
+    return appendToCurrentLine(PrimitiveStrings.of(value));
+  }
+
+  public StreamingWriter println(char value) {
+    return print(value).println();
+  }
+
+  public StreamingWriter println(int value) {
+    return print(value).println();
+  }
+
+  public StreamingWriter println(String string) {
+    return print(string).println();
+  }
+
+  public StreamingWriter println(String string, Object... args) {
+    return print(string, args).println();
+  }
+
+  public StreamingWriter println(Template template, Object... args) {
+    return print(template, args).println();
+  }
+
+  public StreamingWriter println() {
+    assertOpen();
+    if (currentLine != null) {
+      complete(currentLine);
+    }
+    currentLine = Line.empty();
+    tabs = 0;
+    newline = true;
+    return this;
+  }
+
+  /**
+   * Creates a single blank line, if there is not already a blank line. Does nothing in case there
+   * is already a blank line.
+   */
+  public StreamingWriter printSingleBlankLine() {
+    final boolean currentLineEmpty = currentLine != null && currentLine.isEmpty();
+    if (currentLineEmpty && pendingEmptyLines > 0) {
+      return this;
+    }
+    return println();
+  }
+
+  /**
+   * Removes any trailing empty lines, i.e. this method is called and print statement will add the
+   * content directly to the last non empty line.
+   */
+  public StreamingWriter resetToLastNotEmptyLine() {
+    assertOpen();
+    if (currentLine == null || currentLine.isEmpty()) {
+      completedLines -= pendingEmptyLines + (heldLine != null ? 1 : 0);
+      pendingEmptyLines = 0;
+      currentLine = heldLine;
+      heldLine = null;
+    }
+    newline = false;
+    return this;
+  }
+
+  /** Appends the content of the given {@link Writer}, see {@link Writer#append(Writer)}. */
+  public StreamingWriter append(Writer other) {
+    return append(0, other);
+  }
+
+  /**
+   * Appends the content of the given {@link Writer} indented with the given number of tabs, see
+   * {@link Writer#append(int, Writer)}. If {@code other} contains the position of its refs and no
+   * position is set in this writer, the refs are printed at this position within the appended
+   * content.
+   *
+   * <p>This deviates from {@link Writer#append(int, Writer)}, which uses the line number of the
+   * refs in {@code other} as line number in the whole content, i.e. places the refs before the
+   * appended content in case this writer contains already lines. The lines before the appended
+   * content are possibly written to the sink already and the position can therefore not be moved
+   * backwards.
+   */
+  public StreamingWriter append(int tabs, Writer other) {
+    assertOpen();
+    if (!newline && currentLine != null) {
+      complete(currentLine);
+    }
+    if (refsLineNumber < 0 && other.getRefsLineNumber() >= 0) {
+      refsLineNumber = completedLines + other.getRefsLineNumber();
+    }
+    other.getLinesDroppingLastNewline().forEach(line -> complete(line.indent(tabs, indentation)));
+    refs = refs.union(other.getRefSet());
+    currentLine = Line.empty();
+    this.tabs = 0;
+    newline = true;
+    return this;
+  }
+
+  /** Writes the remaining lines and the refs and closes the sink. */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (!newline && currentLine != null) {
+        complete(currentLine);
+      }
+      releaseHeldLines();
+      if (refsLineNumber >= 0) {
+        startPatchIfNecessary();
+        final String patchText = patch.render();
+        final boolean dropSeparator = patch.pieces().isEmpty() && !patch.hasPrecedingContent;
+        sink.patch(patchText, dropSeparator ? 1 : 0);
+      }
+      sink.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private StreamingWriter appendToCurrentLine(String fragment) {
+    assertOpen();
+    if (currentLine != null) {
+      final Line line = currentLine.append(fragment);
+      currentLine = newline ? line.indent(tabs, indentation) : line;
+    }
+    newline = false;
+    return this;
+  }
+
+  private void assertOpen() {
+    if (closed) {
+      throw new IllegalStateException("Writer is already closed");
+    }
+  }
+
+  /**
+   * A finished line is held back until the next non-empty line is finished, as long as trailing
+   * empty lines may still be removed.
+   */
+  private void complete(Line line) {
+    completedLines++;
+    if (line.isEmpty()) {
+      pendingEmptyLines++;
+    } else {
+      releaseHeldLines();
+      heldLine = line;
+    }
+  }
+
+  private void releaseHeldLines() {
+    if (heldLine != null) {
+      emit(heldLine);
+      heldLine = null;
+    }
+    for (int i = 0; i < pendingEmptyLines; i++) {
+      emit(Line.empty());
+    }
+    pendingEmptyLines = 0;
+  }
+
+  /** Applies the same filtering of consecutive blank lines as {@link Writer#asString()}. */
+  private void emit(Line line) {
+    final int index = emittedLines++;
+    final boolean empty = line.isEmpty();
+    final boolean keep =
+        !settings.isNoMultipleNewLines() || index == 0 || !previousEmpty || !empty;
+    previousEmpty = empty;
+
+    if (index == refsLineNumber) {
+      startPatchIfNecessary();
+      if (!keep) {
+        // Kept only in case refs are printed, i.e. it's decided when closing
+        patch.addConditionalBlankLine();
+        return;
+      }
+    }
+
+    if (keep) {
+      final String text = line.removeTrailingBlankFragments().asString();
+      if (patch == null) {
+        writeLine(text);
+        keptLines++;
+      } else if (patch.isCollecting()) {
+        patch.addLine(text);
+      } else {
+        writeLine(text);
+      }
+    }
+  }
+
+  private void startPatchIfNecessary() {
+    if (patch == null) {
+      patch = new Patch(refsLineNumber - keptLines, !sink.isEmpty());
+      sink.startPatch();
+    }
+  }
+
+  private void writeLine(String text) {
+    try {
+      sink.write(sink.isEmpty() && patch == null ? text : NEWLINE_STRING + text);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Content of the region reserved for the refs. As lines around the position of the refs may have
+   * been dropped, the refs are inserted after {@code offset} kept lines, like it's done in {@link
+   * Writer#asString()}. Lines are collected until this position is known regardless whether the
+   * conditional blank line is kept or not.
+   */
+  private final class Patch {
+    private final int offset;
+    private final boolean hasPrecedingContent;
+    private final List<String> lines = new ArrayList<>();
+    private int conditionalBlankLineIndex = -1;
+
+    private Patch(int offset, boolean hasPrecedingContent) {
+      this.offset = offset;
+      this.hasPrecedingContent = hasPrecedingContent;
+    }
+
+    private void addConditionalBlankLine() {
+      conditionalBlankLineIndex = lines.size();
+      lines.add("");
+    }
+
+    private void addLine(String line) {
+      lines.add(line);
+    }
+
+    private boolean isCollecting() {
+      final int collectedLines = lines.size() - (conditionalBlankLineIndex >= 0 ? 1 : 0);
+      return collectedLines < offset;
+    }
+
+    private List<String> pieces() {
+      final List<String> patchLines = new ArrayList<>(lines);
+      if (conditionalBlankLineIndex >= 0 && refs.isEmpty()) {
+        patchLines.remove(conditionalBlankLineIndex);
+      }
+      final int refsIndex = Math.min(offset, patchLines.size());
+      final List<String> pieces = new ArrayList<>(patchLines.subList(0, refsIndex));
+      refs.toPList()
+          .filter(refWriter.filter())
+          .map(refWriter::format)
+          .forEach(pieces::add);
+      pieces.addAll(patchLines.subList(refsIndex, patchLines.size()));
+      return pieces;
+    }
+
+    private String render() {
+      final StringBuilder sb = new StringBuilder();
+      boolean separatorNeeded = hasPrecedingContent;
+      for (String piece : pieces()) {
+        if (separatorNeeded) {
+          sb.append(NEWLINE_STRING);
+        }
+        sb.append(piece);
+        separatorNeeded = true;
+      }
+      return sb.toString();
+    }
+  }
+
+  /**
+   * Target of the content. Everything written after {@link #startPatch()} is placed behind the
+   * patch, which is inserted when calling {@link #patch(String, int)}.
+   */
+  private interface Sink extends Closeable {
+    void write(String text) throws IOException;
+
+    boolean isEmpty();
+
+    void startPatch();
+
+    /**
+     * Inserts the patch at the reserved position and drops the given number of leading newline
+     * characters of the content written after the reserved position.
+     */
+    void patch(String patch, int dropLeadingNewlines) throws IOException;
+  }
+
+  private static final class StreamSink implements Sink {
+    private final java.io.Writer out;
+    private java.io.Writer spool;
+    private Path spoolFile;
+    private boolean empty = true;
+
+    private StreamSink(java.io.Writer out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(String text) throws IOException {
+      empty = false;
+      if (spool != null) {
+        spool.write(text);
+      } else {
+        out.write(text);
+      }
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return empty;
+    }
+
+    @Override
+    public void startPatch() {
+      try {
+        spoolFile = Files.createTempFile("streaming-writer", ".spool");
+        spool = Files.newBufferedWriter(spoolFile, UTF_8);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void patch(String patch, int dropLeadingNewlines) throws IOException {
+      out.write(patch);
+      spool.close();
+      try (BufferedReader reader = Files.newBufferedReader(spoolFile, UTF_8)) {
+        reader.skip(dropLeadingNewlines);
+        final char[] buffer = new char[8192];
+        int read = reader.read(buffer);
+        while (read >= 0) {
+          out.write(buffer, 0, read);
+          read = reader.read(buffer);
+        }
+      } finally {
+        Files.deleteIfExists(spoolFile);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  private static final class ChannelSink implements Sink {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private String unencoded = "";
+    private long patchPosition = -1;
+    private boolean empty = true;
+
+    private ChannelSink(FileChannel channel, Charset charset) {
+      this.channel = channel;
+      this.charset = charset;
+      this.encoder =
+          charset
+              .newEncoder()
+              .onMalformedInput(CodingErrorAction.REPLACE)
+              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Encodes the text into the buffer. Characters left by the encoder, i.e. a trailing high
+     * surrogate, are encoded together with the next text.
+     */
+    @Override
+    public void write(String text) throws IOException {
+      empty = false;
+      final CharBuffer chars = CharBuffer.wrap(unencoded.isEmpty() ? text : unencoded + text);
+      encode(chars, false);
+      unencoded = chars.toString();
+    }
+
+    /**
+     * Encodes the characters left by the encoder as end of the input, i.e. replaces an unpaired
+     * surrogate, and writes the buffer to the channel.
+     */
+    private void endInput() throws IOException {
+      encode(CharBuffer.wrap(unencoded), true);
+      unencoded = "";
+      while (encoder.flush(buffer).isOverflow()) {
+        writeBuffer();
+      }
+      encoder.reset();
+      writeBuffer();
+    }
+
+    private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+      CoderResult result = encoder.encode(chars, buffer, endOfInput);
+      while (result.isOverflow()) {
+        writeBuffer();
+        result = encoder.encode(chars, buffer, endOfInput);
+      }
+    }
+
+    private void writeBuffer() throws IOException {
+      // called on Buffer, the covariant overrides of ByteBuffer do not exist on Java 8
+      ((Buffer) buffer).flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      ((Buffer) buffer).clear();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return empty;
+    }
+
+    @Override
+    public void startPatch() {
+      try {
+        endInput();
+        patchPosition = channel.position();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void patch(String patch, int dropLeadingNewlines) throws IOException {
+      endInput();
+      final ByteBuffer patchBytes = charset.encode(patch);
+      final long end = channel.position();
+      final long droppedBytes =
+          (long) charset.encode(NEWLINE_STRING).remaining() * dropLeadingNewlines;
+      final long restStart = Math.min(end, patchPosition + droppedBytes);
+      final long shift = patchPosition + patchBytes.remaining() - restStart;
+
+      if (shift > 0) {
+        moveBackwards(restStart, end, shift);
+      } else if (shift < 0) {
+        moveForwards(restStart, end, shift);
+        channel.truncate(end + shift);
+      }
+
+      long position = patchPosition;
+      while (patchBytes.hasRemaining()) {
+        position += channel.write(patchBytes, position);
+      }
+      channel.position(end + shift);
+    }
+
+    private void moveBackwards(long start, long end, long shift) throws IOException {
+      long chunkEnd = end;
+      while (chunkEnd > start) {
+        final long chunkStart = Math.max(start, chunkEnd - BUFFER_SIZE);
+        copy(chunkStart, (int) (chunkEnd - chunkStart), chunkStart + shift);
+        chunkEnd = chunkStart;
+      }
+    }
+
+    private void moveForwards(long start, long end, long shift) throws IOException {
+      long chunkStart = start;
+      while (chunkStart < end) {
+        final int length = (int) Math.min(BUFFER_SIZE, end - chunkStart);
+        copy(chunkStart, length, chunkStart + shift);
+        chunkStart += length;
+      }
+    }
+
+    private void copy(long from, int length, long to) throws IOException {
+      ((Buffer) buffer).clear().limit(length);
+      long position = from;
+      while (buffer.hasRemaining()) {
+        position += channel.read(buffer, position);
+      }
+      ((Buffer) buffer).flip();
+      position = to;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      ((Buffer) buffer).clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      endInput();
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package io.github.muehmar.codegenerator.writer;
+
+import java.math.BigInteger;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Format string which is parsed once into literal text and argument segments. Formatting a
+ * template produces the same result as {@link String#format(String, Object...)} with the same
+ * format and arguments.
+ *
+ * <p>The conversions {@code %s}, {@code %d}, {@code %%} and {@code %n} without flags, width or
+ * precision are formatted directly. For any other format specifier, and for arguments which need
+ * locale specific or custom formatting, the template falls back to {@link String#format(String,
+ * Object...)}.
+ */
+public final class Template {
+  private static final char STRING_CONVERSION = 's';
+  private static final char INTEGER_CONVERSION = 'd';
+
+  private static volatile Locale asciiDigitsLocale = Locale.US;
+
+  private final String format;
+  private final String[] literals;
+  private final char[] conversions;
+  private final boolean parsed;
+
+  private Template(String format, String[] literals, char[] conversions, boolean parsed) {
+    this.format = format;
+    this.literals = literals;
+    this.conversions = conversions;
+    this.parsed = parsed;
+  }
+
+  /** Parses the given format string, see {@link java.util.Formatter} for the syntax. */
+  public static Template of(String format) {
+    final List<String> literals = new ArrayList<>();
+    final StringBuilder literal = new StringBuilder();
+    final StringBuilder conversions = new StringBuilder();
+    int index = 0;
+    while (index < format.length()) {
+      final char c = format.charAt(index);
+      if (c != '%') {
+        literal.append(c);
+        index++;
+        continue;
+      }
+      if (index + 1 >= format.length()) {
+        return unparsed(format);
+      }
+      final char conversion = format.charAt(index + 1);
+      if (conversion == '%') {
+        literal.append('%');
+      } else if (conversion == 'n') {
+        literal.append(System.lineSeparator());
+      } else if (conversion == STRING_CONVERSION || conversion == INTEGER_CONVERSION) {
+        literals.add(literal.toString());
+        literal.setLength(0);
+        conversions.append(conversion);
+      } else {
+        return unparsed(format);
+      }
+      index += 2;
+    }
+    literals.add(literal.toString());
+    return new Template(
+        format, literals.toArray(new String[0]), conversions.toString().toCharArray(), true);
+  }
+
+  private static Template unparsed(String format) {
+    return new Template(format, new String[0], new char[0], false);
+  }
+
+  /**
+   * Formats the given string like {@link String#format(String, Object...)} does, without parsing
+   * it in case it contains no format specifier.
+   */
+  static String formatString(String format, Object... args) {
+    return format.indexOf('%') < 0 ? format : String.format(format, args);
+  }
+
+  /** Formats the template with the given arguments. */
+  public String format(Object... args) {
+    if (!parsed || args == null || args.length < conversions.length) {
+      return String.format(format, args);
+    }
+    if (conversions.length == 0) {
+      return literals[0];
+    }
+
+    final String[] formattedArgs = new String[conversions.length];
+    int length = literals[0].length();
+    for (int i = 0; i < conversions.length; i++) {
+      final String formattedArg = formatArgument(conversions[i], args[i]);
+      if (formattedArg == null) {
+        return String.format(format, args);
+      }
+      formattedArgs[i] = formattedArg;
+      length += formattedArg.length() + literals[i + 1].length();
+    }
+    if (length == formattedArgs[0].length()) {
+      return formattedArgs[0];
+    }
+
+    final StringBuilder sb = new StringBuilder(length).append(literals[0]);
+    for (int i = 0; i < formattedArgs.length; i++) {
+      sb.append(formattedArgs[i]).append(literals[i + 1]);
+    }
+    return sb.toString();
+  }
+
+  /** Returns the formatted argument or null in case the fallback to the formatter is needed. */
+  private static String formatArgument(char conversion, Object arg) {
+    if (conversion == STRING_CONVERSION) {
+      return arg instanceof Formattable ? null : String.valueOf(arg);
+    }
+    if (!usesAsciiDigits()) {
+      return null;
+    }
+    if (arg instanceof Integer || arg instanceof Long) {
+      return arg.toString();
+    }
+    if (arg instanceof Short || arg instanceof Byte) {
+      return Integer.toString(((Number) arg).intValue());
+    }
+    if (arg instanceof BigInteger) {
+      return arg.toString();
+    }
+    return null;
+  }
+
+  private static boolean usesAsciiDigits() {
+    final Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+    if (locale.equals(asciiDigitsLocale)) {
+      return true;
+    }
+    if (DecimalFormatSymbols.getInstance(locale).getZeroDigit() == '0') {
+      asciiDigitsLocale = locale;
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return format;
+  }
+}
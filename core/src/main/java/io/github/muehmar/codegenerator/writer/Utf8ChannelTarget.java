@@ -0,0 +1,209 @@
+package io.github.muehmar.codegenerator.writer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Encodes the rendered content as UTF-8 into pooled buffers. Full buffers are collected and written
+ * with a single gathering write if the channel supports it. ASCII characters are copied without
+ * any encoding step. Unpaired surrogates are replaced by {@code '?'} like {@link
+ * String#getBytes(java.nio.charset.Charset)} does.
+ */
+final class Utf8ChannelTarget implements Writer.RenderTarget, Line.CharTarget {
+  private static final int GATHERED_BUFFERS = 8;
+  private static final byte REPLACEMENT = '?';
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer[] buffers = new ByteBuffer[GATHERED_BUFFERS];
+  private char[] textChars = new char[64];
+  private int bufferCount = 0;
+  private ByteBuffer current;
+  private char pendingHighSurrogate = 0;
+  private boolean empty = true;
+  private long characters = 0;
+
+  Utf8ChannelTarget(WritableByteChannel channel) {
+    this.channel = channel;
+    this.current = ByteBufferPool.acquire();
+  }
+
+  @Override
+  public void line(Line line) {
+    writeSeparator();
+    line.render(this);
+  }
+
+  @Override
+  public void text(String text) {
+    writeSeparator();
+    append(text);
+  }
+
+  @Override
+  public void append(String text) {
+    final int length = text.length();
+    if (textChars.length < length) {
+      textChars = new char[Math.max(length, 2 * textChars.length)];
+    }
+    text.getChars(0, length, textChars, 0);
+    append(textChars, 0, length);
+  }
+
+  @Override
+  public void append(char[] chars, int offset, int length) {
+    characters += length;
+    final int end = offset + length;
+    int index = offset;
+    if (pendingHighSurrogate == 0) {
+      index = encodeAscii(chars, offset, end);
+    }
+    for (; index < end; index++) {
+      encode(chars[index]);
+    }
+  }
+
+  /** Returns the number of characters passed to this target including the newlines. */
+  long characters() {
+    return characters;
+  }
+
+  /** Writes all remaining bytes to the channel. */
+  void flush() {
+    if (pendingHighSurrogate != 0) {
+      pendingHighSurrogate = 0;
+      put(REPLACEMENT);
+    }
+    nextBuffer();
+    writeBuffers();
+  }
+
+  /** Returns all buffers to the pool, the target must not be used afterwards. */
+  void release() {
+    for (int i = 0; i < bufferCount; i++) {
+      ByteBufferPool.release(buffers[i]);
+      buffers[i] = null;
+    }
+    bufferCount = 0;
+    if (current != null) {
+      ByteBufferPool.release(current);
+      current = null;
+    }
+  }
+
+  private void writeSeparator() {
+    if (!empty) {
+      characters++;
+      encode('\n');
+    }
+    empty = false;
+  }
+
+  /** Copies the leading ASCII characters directly into the current buffer. */
+  private int encodeAscii(char[] chars, int offset, int end) {
+    int index = offset;
+    while (index < end) {
+      if (!current.hasRemaining()) {
+        nextBuffer();
+      }
+      final byte[] array = current.array();
+      final int arrayOffset = current.arrayOffset() + current.position();
+      final int count = Math.min(end - index, current.remaining());
+      int copied = 0;
+      while (copied < count) {
+        final char c = chars[index + copied];
+        if (c >= 0x80) {
+          ((Buffer) current).position(current.position() + copied);
+          return index + copied;
+        }
+        array[arrayOffset + copied] = (byte) c;
+        copied++;
+      }
+      ((Buffer) current).position(current.position() + copied);
+      index += copied;
+    }
+    return index;
+  }
+
+  private void encode(char c) {
+    if (pendingHighSurrogate != 0) {
+      final char high = pendingHighSurrogate;
+      pendingHighSurrogate = 0;
+      if (Character.isLowSurrogate(c)) {
+        encodeCodePoint(Character.toCodePoint(high, c));
+        return;
+      }
+      put(REPLACEMENT);
+    }
+
+    if (c < 0x80) {
+      put((byte) c);
+    } else if (c < 0x800) {
+      put((byte) (0xC0 | (c >> 6)));
+      put((byte) (0x80 | (c & 0x3F)));
+    } else if (Character.isHighSurrogate(c)) {
+      pendingHighSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      put(REPLACEMENT);
+    } else {
+      put((byte) (0xE0 | (c >> 12)));
+      put((byte) (0x80 | ((c >> 6) & 0x3F)));
+      put((byte) (0x80 | (c & 0x3F)));
+    }
+  }
+
+  private void encodeCodePoint(int codePoint) {
+    put((byte) (0xF0 | (codePoint >> 18)));
+    put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+    put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+    put((byte) (0x80 | (codePoint & 0x3F)));
+  }
+
+  private void put(byte b) {
+    if (!current.hasRemaining()) {
+      nextBuffer();
+    }
+    current.put(b);
+  }
+
+  private void nextBuffer() {
+    ((Buffer) current).flip();
+    buffers[bufferCount++] = current;
+    current = null;
+    if (bufferCount == GATHERED_BUFFERS) {
+      writeBuffers();
+    }
+    current = ByteBufferPool.acquire();
+  }
+
+  private void writeBuffers() {
+    long remaining = 0;
+    for (int i = 0; i < bufferCount; i++) {
+      remaining += buffers[i].remaining();
+    }
+    try {
+      if (channel instanceof GatheringByteChannel) {
+        final GatheringByteChannel gatheringChannel = (GatheringByteChannel) channel;
+        while (remaining > 0) {
+          remaining -= gatheringChannel.write(buffers, 0, bufferCount);
+        }
+      } else {
+        for (int i = 0; i < bufferCount; i++) {
+          while (buffers[i].hasRemaining()) {
+            channel.write(buffers[i]);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    for (int i = 0; i < bufferCount; i++) {
+      ByteBufferPool.release(buffers[i]);
+      buffers[i] = null;
+    }
+    bufferCount = 0;
+  }
+}
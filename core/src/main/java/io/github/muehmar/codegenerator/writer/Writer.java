@@ -3,24 +3,30 @@ package io.github.muehmar.codegenerator.writer;
 import static io.github.muehmar.codegenerator.writer.WriterSettings.defaultSettings;
 
 import ch.bluecare.commons.data.PList;
-import ch.bluecare.commons.data.Pair;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.BiPredicate;
-import java.util.function.Consumer;
-import java.util.function.Function;
-import java.util.function.UnaryOperator;
-import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
-
-@AllArgsConstructor(access = AccessLevel.PRIVATE)
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics;
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics.Operation;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
 public final class Writer {
   private static final String NEWLINE_STRING = "\n";
 
-  private final PList<String> refs;
+  private final RefSet refs;
   private final int refsLineNumber;
-  private final PList<Line> lines;
+  private final LineRope lines;
+
+  /** Number of empty lines at the end of {@code lines}. */
+  private final int trailingEmptyLines;
 
-  private final String tab;
+  private final Indentation indentation;
 
   private final int tabs;
   private final boolean newline;
@@ -29,10 +35,43 @@ public final class Writer {
 
   private final RefWriter refWriter;
 
+  Writer(
+      RefSet refs,
+      int refsLineNumber,
+      LineRope lines,
+      int trailingEmptyLines,
+      Indentation indentation,
+      int tabs,
+      boolean newline,
+      WriterSettings settings,
+      RefWriter refWriter) {
+    this.refs = refs;
+    this.refsLineNumber = refsLineNumber;
+    this.lines = lines;
+    this.trailingEmptyLines = trailingEmptyLines;
+    this.indentation = indentation;
+    this.tabs = tabs;
+    this.newline = newline;
+    this.settings = settings;
+    this.refWriter = refWriter;
+    final GenerationMetrics metrics = GenerationMetrics.installed();
+    if (metrics != null) {
+      metrics.writerAllocated();
+    }
+  }
+
   public static Writer create(RefWriter refWriter, WriterSettings settings) {
-    final String tab = new String(new char[settings.getSpacesPerTab()]).replace("\0", " ");
+    final Indentation indentation = Indentation.forSpacesPerTab(settings.getSpacesPerTab());
     return new Writer(
-        PList.empty(), -1, PList.single(Line.empty()), tab, 0, true, settings, refWriter);
+        RefSet.empty(refWriter.sortComparator()),
+        -1,
+        LineRope.single(Line.empty()),
+        1,
+        indentation,
+        0,
+        true,
+        settings,
+        refWriter);
   }
 
   public static Writer javaWriter() {
@@ -44,18 +83,28 @@ public final class Writer {
   }
 
   private Writer appendToLastLine(String fragment) {
-    final PList<Line> newLines =
-        this.lines
-            .headOption()
-            .map(l -> l.append(fragment))
-            .map(l -> newline ? l.prepend(createTabs(tabs)) : l)
-            .map(l -> this.lines.tail().cons(l))
-            .orElse(this.lines);
-    return new Writer(refs, refsLineNumber, newLines, tab, tabs, false, settings, refWriter);
+    if (lines.isEmpty()) {
+      return new Writer(
+          refs, refsLineNumber, lines, 0, indentation, tabs, false, settings, refWriter);
+    }
+    final Line lastLine = lines.last().append(fragment);
+    final LineRope newLines =
+        lines.withLast(newline ? lastLine.indent(tabs, indentation) : lastLine);
+    return new Writer(
+        refs, refsLineNumber, newLines, 0, indentation, tabs, false, settings, refWriter);
   }
 
   public Writer tab(int tabs) {
-    return new Writer(refs, refsLineNumber, lines, tab, tabs, newline, settings, refWriter);
+    return new Writer(
+        refs,
+        refsLineNumber,
+        lines,
+        trailingEmptyLines,
+        indentation,
+        tabs,
+        newline,
+        settings,
+        refWriter);
   }
 
   public Writer append(Writer other) {
@@ -66,71 +115,257 @@ public final class Writer {
     final int usedRefsLineNumber =
         this.refsLineNumber > 0 ? this.refsLineNumber : other.refsLineNumber;
 
-    final UnaryOperator<Line> indentLine = line -> line.prepend(createTabs(tabs));
+    final LineRope otherLines = other.getLinesDroppingLastNewline();
+    final LineRope indentedLines = otherLines.indent(tabs, indentation);
 
-    final PList<Line> newLines =
-        other.getLinesDroppingLastNewline().map(indentLine).concat(getLinesDroppingLastNewline());
+    final LineRope newLines = getLinesDroppingLastNewline().concat(indentedLines);
+    final int newTrailingEmptyLines =
+        trailingEmptyLinesOfConcat(
+            trailingEmptyLinesDroppingLastNewline(),
+            tabs > 0 ? 0 : other.trailingEmptyLinesDroppingLastNewline(),
+            indentedLines);
 
     return new Writer(
-        this.refs.concat(other.refs),
+        this.refs.union(other.refs),
         usedRefsLineNumber,
-        newLines.cons(Line.empty()),
-        tab,
+        newLines.add(Line.empty()),
+        newTrailingEmptyLines + 1,
+        indentation,
         0,
         true,
         settings,
         refWriter);
   }
 
-  private PList<String> createTabs(int tabs) {
-    return PList.range(0, tabs).map(ignore -> tab);
+  /**
+   * Returns a writer without the content of this writer in which the methods can be called as if
+   * they were called on this writer, i.e. it has the same tabs, the same number of trailing empty
+   * lines and continues the current line. The content before is represented by a placeholder line.
+   * The returned writer is the start for fragments which are merged afterwards with {@link
+   * #continueWith(Writer, Writer)}.
+   */
+  public Writer startFragment() {
+    LineRope fragmentLines = LineRope.single(Line.placeholder());
+    for (int i = 1; i < trailingEmptyLines; i++) {
+      fragmentLines = fragmentLines.add(Line.empty());
+    }
+    return new Writer(
+        refs.emptySet(),
+        refsLineNumber > 0 ? Integer.MAX_VALUE : refsLineNumber,
+        fragmentLines.add(Line.empty()),
+        trailingEmptyLines,
+        indentation,
+        tabs,
+        newline,
+        settings,
+        refWriter);
+  }
+
+  /**
+   * Appends the content of a {@code fragment} created from the given {@code start} as if the
+   * methods called to create the fragment were called on this writer. The start must be created
+   * with {@link #startFragment()} from a writer in the same state as this writer, i.e. with the
+   * same tabs and number of trailing empty lines, this allows to create fragments independently,
+   * e.g. in parallel, and to merge them in order afterwards.
+   *
+   * <p>Returns an empty optional in case the fragment cannot be merged without changing the
+   * output, i.e. this writer is not in the state of the start or the fragment changed the content
+   * before the start or the position of the refs. The methods have to be called on this writer
+   * instead in this case.
+   */
+  public Optional<Writer> continueWith(Writer start, Writer fragment) {
+    final int startSize = start.lines.size();
+    final boolean sameState =
+        newline == start.newline
+            && tabs == start.tabs
+            && trailingEmptyLines == start.trailingEmptyLines
+            && (refsLineNumber > 0 ? Integer.MAX_VALUE : refsLineNumber) == start.refsLineNumber
+            && indentation.sameAs(start.indentation)
+            && lines.size() >= startSize - 1;
+    final boolean placeholderKept =
+        !fragment.lines.isEmpty() && fragment.lines.get(0) == start.lines.get(0);
+    if (!sameState || !placeholderKept || fragment.refsLineNumber != start.refsLineNumber) {
+      return Optional.empty();
+    }
+
+    final LineRope fragmentLines = fragment.lines.drop(1);
+    final LineRope newLines;
+    if (newline || fragmentLines.isEmpty()) {
+      newLines = lines.take(lines.size() - startSize + 1).concat(fragmentLines);
+    } else {
+      final Line currentLine = lines.last().appendFragments(fragmentLines.get(0));
+      newLines = lines.withLast(currentLine).concat(fragmentLines.drop(1));
+    }
+    return Optional.of(
+        new Writer(
+            refs.union(fragment.refs),
+            refsLineNumber,
+            newLines,
+            fragment.trailingEmptyLines,
+            indentation,
+            fragment.tabs,
+            fragment.newline,
+            settings,
+            refWriter));
+  }
+
+  /**
+   * Concatenates the given writers, the result is the same as appending the writers one after
+   * another to the first writer with {@link Writer#append(Writer)}. The lines of the writers are
+   * not copied, they are composed once into a balanced tree and the refs are merged.
+   *
+   * @throws IllegalArgumentException if no writer is given
+   */
+  public static Writer concatAll(Iterable<Writer> writers) {
+    final Iterator<Writer> iterator = writers.iterator();
+    if (!iterator.hasNext()) {
+      throw new IllegalArgumentException("At least one writer is required to concatenate");
+    }
+    final Writer first = iterator.next();
+    if (!iterator.hasNext()) {
+      return first;
+    }
+
+    final List<LineRope> lines = new ArrayList<>();
+    RefSet refs = first.refs;
+    int refsLineNumber = first.refsLineNumber;
+    int trailingEmptyLines = first.trailingEmptyLinesDroppingLastNewline();
+    lines.add(first.getLinesDroppingLastNewline());
+    while (iterator.hasNext()) {
+      final Writer next = iterator.next();
+      final LineRope nextLines = next.getLinesDroppingLastNewline();
+      refsLineNumber = refsLineNumber > 0 ? refsLineNumber : next.refsLineNumber;
+      trailingEmptyLines =
+          trailingEmptyLinesOfConcat(
+              trailingEmptyLines, next.trailingEmptyLinesDroppingLastNewline(), nextLines);
+      lines.add(nextLines);
+      refs = refs.union(next.refs);
+    }
+
+    return new Writer(
+        refs,
+        refsLineNumber,
+        LineRope.concatAll(lines).add(Line.empty()),
+        trailingEmptyLines + 1,
+        first.indentation,
+        0,
+        true,
+        first.settings,
+        first.refWriter);
+  }
+
+  LineRope getLinesDroppingLastNewline() {
+    return newline ? lines.dropLast(1) : lines;
+  }
+
+  int trailingEmptyLinesDroppingLastNewline() {
+    return newline ? trailingEmptyLines - 1 : trailingEmptyLines;
   }
 
-  private PList<Line> getLinesDroppingLastNewline() {
-    return newline ? lines.drop(1) : lines;
+  /**
+   * Returns the number of trailing empty lines of the concatenation of lines ending with {@code
+   * first} empty lines and the {@code second} lines ending with {@code secondTrailing} empty lines.
+   * Indented lines are never empty.
+   */
+  static int trailingEmptyLinesOfConcat(int first, int secondTrailing, LineRope second) {
+    return secondTrailing == second.size() ? first + secondTrailing : secondTrailing;
   }
 
   public Writer empty() {
     return new Writer(
-        PList.empty(), -1, PList.single(Line.empty()), tab, 0, true, settings, refWriter);
+        refs.emptySet(),
+        -1,
+        LineRope.single(Line.empty()),
+        1,
+        indentation,
+        0,
+        true,
+        settings,
+        refWriter);
+  }
+
+  /**
+   * Returns a {@link WriterBuilder} with the content of this writer. This writer is not affected by
+   * any changes of the builder.
+   */
+  public WriterBuilder toBuilder() {
+    final WriterBuilder builder = new WriterBuilder();
+    copyTo(builder);
+    return builder;
+  }
+
+  void copyTo(WriterBuilder builder) {
+    builder.set(
+        refs,
+        refsLineNumber,
+        lines,
+        trailingEmptyLines,
+        indentation,
+        tabs,
+        newline,
+        settings,
+        refWriter);
   }
 
   public Writer ref(String ref) {
     return new Writer(
-        refs.cons(ref), refsLineNumber, lines, tab, tabs, newline, settings, refWriter);
+        refs.add(ref),
+        refsLineNumber,
+        lines,
+        trailingEmptyLines,
+        indentation,
+        tabs,
+        newline,
+        settings,
+        refWriter);
   }
 
   public Writer refs(Iterable<String> ref) {
     return new Writer(
-        refs.concat(PList.fromIter(ref)),
+        refs.addAll(ref),
         refsLineNumber,
         lines,
-        tab,
+        trailingEmptyLines,
+        indentation,
         tabs,
         newline,
         settings,
         refWriter);
   }
 
+  /** Returns the distinct refs sorted with the comparator of the {@link RefWriter}. */
   public PList<String> getRefs() {
+    return refs.toPList();
+  }
+
+  /** Returns the number of distinct refs without creating the list of {@link #getRefs()}. */
+  public int refCount() {
+    return refs.size();
+  }
+
+  RefSet getRefSet() {
     return refs;
   }
 
+  int getRefsLineNumber() {
+    return refsLineNumber;
+  }
+
   /**
    * This will print the refs at the current position utilizing {@link RefWriter} when calling
    * {@link Writer#asString()}.
    */
   public Writer printRefs() {
     return new Writer(
-        refs, lines.size() - (newline ? 1 : 0), lines, tab, tabs, newline, settings, refWriter);
-  }
-
-  private static String removeTrailingNewlineCharacter(String str) {
-    final int length = str.length();
-    if (length > 0 && str.substring(length - 1).equals(NEWLINE_STRING)) {
-      return str.substring(0, length - 1);
-    }
-    return str;
+        refs,
+        lines.size() - (newline ? 1 : 0),
+        lines,
+        trailingEmptyLines,
+        indentation,
+        tabs,
+        newline,
+        settings,
+        refWriter);
   }
 
   /**
@@ -138,23 +373,27 @@ public final class Writer {
    * is already a blank line.
    */
   public Writer printSingleBlankLine() {
-    if (lines.headOption().filter(Line::isEmpty).isPresent()
-        && lines.drop(1).headOption().filter(Line::isEmpty).isPresent()) {
+    if (trailingEmptyLines >= 2) {
       return this;
     }
     return println();
   }
 
   public Writer print(String string, Object... args) {
-    return appendToLastLine(String.format(string, args));
+    return appendToLastLine(Template.formatString(string, args));
+  }
+
+  /** Prints the template formatted with the given arguments, see {@link Template#format}. */
+  public Writer print(Template template, Object... args) {
+    return appendToLastLine(template.format(args));
   }
 
   public Writer print(char value) {
-    return print("" + value);
+    return appendToLastLine(PrimitiveStrings.of(value));
   }
 
   public Writer print(int value) {
-    return print("" + value);
+    return appendToLastLine(PrimitiveStrings.of(value));
   }
 
   public Writer println(char value) {
@@ -173,9 +412,21 @@ public final class Writer {
     return print(string, args).println();
   }
 
+  public Writer println(Template template, Object... args) {
+    return print(template, args).println();
+  }
+
   public Writer println() {
     return new Writer(
-        refs, refsLineNumber, lines.cons(Line.empty()), tab, 0, true, settings, refWriter);
+        refs,
+        refsLineNumber,
+        lines.add(Line.empty()),
+        trailingEmptyLines + 1,
+        indentation,
+        0,
+        true,
+        settings,
+        refWriter);
   }
 
   /**
@@ -183,54 +434,223 @@ public final class Writer {
    * content directly to the last non empty line.
    */
   public Writer resetToLastNotEmptyLine() {
-    final AtomicBoolean nonEmptyFound = new AtomicBoolean(false);
-    final PList<Line> filteredLines =
-        lines.filter(
-            line -> {
-              if (line.nonEmpty() || nonEmptyFound.get()) {
-                nonEmptyFound.set(true);
-                return true;
-              } else {
-                return false;
-              }
-            });
-    return new Writer(refs, refsLineNumber, filteredLines, tab, tabs, false, settings, refWriter);
+    final LineRope filteredLines = lines.take(lines.size() - trailingEmptyLines);
+    return new Writer(
+        refs, refsLineNumber, filteredLines, 0, indentation, tabs, false, settings, refWriter);
+  }
+
+  public WriterSettings getSettings() {
+    return settings;
+  }
+
+  /** Returns the number of lines including the line which is currently printed to. */
+  public int lineCount() {
+    return lines.size();
+  }
+
+  /**
+   * Returns the number of characters of the lines starting at the given line without the refs and
+   * the line separators.
+   */
+  public long characterCount(int fromLine) {
+    long count = 0;
+    for (int i = fromLine; i < lines.size(); i++) {
+      count += lines.get(i).renderedLength();
+    }
+    return count;
+  }
+
+  /** Returns the length of the content of {@link #asString()} without creating the string. */
+  public int length() {
+    final LengthCounter lengthCounter = new LengthCounter();
+    render(formatRefs(), lengthCounter);
+    return lengthCounter.length;
   }
 
   /** Returns the content of this writer as string- */
   public String asString() {
-    final StringBuilder sb = new StringBuilder();
-    final Consumer<Line> applyStringBuilder =
-        line -> {
-          sb.append(line.removeTrailingBlankFragments().asStringBuilder());
-          sb.append(NEWLINE_STRING);
-        };
-
-    final BiPredicate<Pair<Line, Integer>, Pair<Line, Integer>> consecutiveLineFilter =
-        settings.isNoMultipleNewLines()
-            ? (l1, l2) ->
-                l1.first().nonEmpty()
-                    || l2.first().nonEmpty()
-                    || (l2.second() == refsLineNumber && refs.nonEmpty())
-            : (l1, l2) -> true;
-
-    final PList<Line> reversedLines =
-        getLinesDroppingLastNewline()
-            .reverse()
-            .zipWithIndex()
-            .filterWithPrev(ignore -> true, consecutiveLineFilter)
-            .map(Pair::first);
-    reversedLines.take(Math.max(refsLineNumber, 0)).forEach(applyStringBuilder);
-
-    if (refsLineNumber >= 0) {
-      refs.distinct(Function.identity())
-          .sort(refWriter.sortComparator())
-          .filter(refWriter.filter())
-          .map(refWriter::format)
-          .forEach(ref -> sb.append(ref).append(NEWLINE_STRING));
-    }
-
-    reversedLines.drop(Math.max(refsLineNumber, 0)).forEach(applyStringBuilder);
-    return removeTrailingNewlineCharacter(sb.toString());
+    final GenerationMetrics metrics = GenerationMetrics.installed();
+    final Object context = metrics != null ? metrics.begin(Operation.RENDER) : null;
+    final long start = metrics != null ? System.nanoTime() : 0;
+    final PList<String> formattedRefs = formatRefs();
+    final LengthCounter lengthCounter = new LengthCounter();
+    render(formattedRefs, lengthCounter);
+    final StringBuilder sb = new StringBuilder(lengthCounter.length);
+    final int renderedLines = render(formattedRefs, new StringBuilderTarget(sb));
+    final String content = sb.toString();
+    if (metrics != null) {
+      metrics.rendered(
+          context,
+          renderedLines,
+          content.length(),
+          formattedRefs.size(),
+          System.nanoTime() - start);
+    }
+    return content;
+  }
+
+  /**
+   * Writes the content of this writer UTF-8 encoded to the given channel. The content is encoded
+   * directly into pooled buffers, i.e. the same bytes as {@code asString().getBytes(UTF_8)} are
+   * written without creating the string. The channel is not closed.
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    final GenerationMetrics metrics = GenerationMetrics.installed();
+    final Object context = metrics != null ? metrics.begin(Operation.RENDER) : null;
+    final long start = metrics != null ? System.nanoTime() : 0;
+    final Utf8ChannelTarget target = new Utf8ChannelTarget(channel);
+    try {
+      final PList<String> formattedRefs = formatRefs();
+      final int renderedLines = render(formattedRefs, target);
+      target.flush();
+      if (metrics != null) {
+        metrics.rendered(
+            context,
+            renderedLines,
+            target.characters(),
+            formattedRefs.size(),
+            System.nanoTime() - start);
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      target.release();
+    }
+  }
+
+  /**
+   * Writes the content of this writer UTF-8 encoded to the file at the given path. An existing file
+   * is overwritten.
+   */
+  public void writeTo(Path path) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      writeTo(channel);
+    }
+  }
+
+  private PList<String> formatRefs() {
+    if (refsLineNumber < 0) {
+      return PList.empty();
+    }
+    final GenerationMetrics metrics = GenerationMetrics.installed();
+    if (metrics == null) {
+      return refs.toPList().filter(refWriter.filter()).map(refWriter::format);
+    }
+    final Object context = metrics.begin(Operation.RESOLVE_REFS);
+    final long start = System.nanoTime();
+    final PList<String> allRefs = refs.toPList();
+    final PList<String> formattedRefs = allRefs.filter(refWriter.filter()).map(refWriter::format);
+    metrics.refsResolved(
+        context, allRefs.size(), formattedRefs.size(), System.nanoTime() - start);
+    return formattedRefs;
+  }
+
+  /**
+   * Passes the content in a single pass to the target. Consecutive blank lines are dropped if
+   * configured and the formatted refs are inserted after the first {@code refsLineNumber} remaining
+   * lines. Returns the number of rendered lines including the refs.
+   */
+  private int render(PList<String> formattedRefs, RenderTarget target) {
+    final boolean noMultipleNewLines = settings.isNoMultipleNewLines();
+    final boolean hasRefs = refs.nonEmpty();
+    boolean refsRendered = refsLineNumber < 0;
+    boolean previousEmpty = false;
+    int index = 0;
+    int renderedLines = 0;
+    for (Line line : getLinesDroppingLastNewline()) {
+      final boolean empty = line.isEmpty();
+      final boolean keepLine =
+          !noMultipleNewLines
+              || index == 0
+              || !previousEmpty
+              || !empty
+              || (index == refsLineNumber && hasRefs);
+      previousEmpty = empty;
+      index++;
+
+      if (keepLine) {
+        if (!refsRendered && renderedLines == refsLineNumber) {
+          formattedRefs.forEach(target::text);
+          refsRendered = true;
+        }
+        target.line(line);
+        renderedLines++;
+      }
+    }
+
+    if (!refsRendered) {
+      formattedRefs.forEach(target::text);
+    }
+    return renderedLines + formattedRefs.size();
+  }
+
+  /** Receives the rendered content, lines and refs are separated by a newline. */
+  interface RenderTarget {
+    void line(Line line);
+
+    void text(String text);
+  }
+
+  private static final class LengthCounter implements RenderTarget {
+    private int length = 0;
+    private boolean empty = true;
+
+    @Override
+    public void line(Line line) {
+      add(line.renderedLength());
+    }
+
+    @Override
+    public void text(String text) {
+      add(text.length());
+    }
+
+    private void add(int pieceLength) {
+      length += empty ? pieceLength : pieceLength + NEWLINE_STRING.length();
+      empty = false;
+    }
+  }
+
+  private static final class StringBuilderTarget implements RenderTarget, Line.CharTarget {
+    private final StringBuilder sb;
+    private boolean empty = true;
+
+    private StringBuilderTarget(StringBuilder sb) {
+      this.sb = sb;
+    }
+
+    @Override
+    public void line(Line line) {
+      appendSeparator();
+      line.render(this);
+    }
+
+    @Override
+    public void text(String text) {
+      appendSeparator();
+      sb.append(text);
+    }
+
+    @Override
+    public void append(String text) {
+      sb.append(text);
+    }
+
+    @Override
+    public void append(char[] chars, int offset, int length) {
+      sb.append(chars, offset, length);
+    }
+
+    private void appendSeparator() {
+      if (!empty) {
+        sb.append(NEWLINE_STRING);
+      }
+      empty = false;
+    }
   }
 }
@@ -0,0 +1,376 @@
+package io.github.muehmar.codegenerator.writer;
+
+import ch.bluecare.commons.data.PList;
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics;
+import java.util.function.UnaryOperator;
+
+/**
+ * Mutable counterpart of {@link Writer}. All methods modify this builder instead of creating a new
+ * instance, which avoids most of the allocations of the immutable {@link Writer}. The produced
+ * content is the same as the content produced by the {@link Writer} with the same method calls.
+ *
+ * <p>A builder is not thread safe. The state can be saved with {@link #snapshot()} and restored
+ * with {@link #rollback(Snapshot)}, both are cheap operations.
+ */
+public final class WriterBuilder {
+  private static final int CHUNK_SIZE = 32;
+
+  private RefSet refs;
+  private int refsLineNumber;
+
+  /** Completed lines followed by the lines in {@code chunk} and the {@code lastLine}. */
+  private LineRope lines;
+
+  private Line[] chunk = new Line[CHUNK_SIZE];
+  private int chunkSize;
+
+  /** The line printed to, null in case this builder contains no lines at all. */
+  private Line lastLine;
+
+  /** Number of empty lines at the end of all lines including the {@code lastLine}. */
+  private int trailingEmptyLines;
+
+  private Indentation indentation;
+  private int tabs;
+  private boolean newline;
+  private WriterSettings settings;
+  private RefWriter refWriter;
+
+  WriterBuilder() {
+    final GenerationMetrics metrics = GenerationMetrics.installed();
+    if (metrics != null) {
+      metrics.writerAllocated();
+    }
+  }
+
+  public static WriterBuilder create(RefWriter refWriter, WriterSettings settings) {
+    return Writer.create(refWriter, settings).toBuilder();
+  }
+
+  public static WriterBuilder javaWriterBuilder() {
+    return Writer.javaWriter().toBuilder();
+  }
+
+  public static WriterBuilder javaWriterBuilder(WriterSettings settings) {
+    return Writer.javaWriter(settings).toBuilder();
+  }
+
+  void set(
+      RefSet refs,
+      int refsLineNumber,
+      LineRope lines,
+      int trailingEmptyLines,
+      Indentation indentation,
+      int tabs,
+      boolean newline,
+      WriterSettings settings,
+      RefWriter refWriter) {
+    this.refs = refs;
+    this.refsLineNumber = refsLineNumber;
+    this.lines = lines.isEmpty() ? lines : lines.dropLast(1);
+    this.lastLine = lines.isEmpty() ? null : lines.last();
+    this.chunkSize = 0;
+    this.trailingEmptyLines = trailingEmptyLines;
+    this.indentation = indentation;
+    this.tabs = tabs;
+    this.newline = newline;
+    this.settings = settings;
+    this.refWriter = refWriter;
+  }
+
+  /** Returns an immutable {@link Writer} with the current content of this builder. */
+  public Writer toWriter() {
+    final LineRope allLines = lastLine == null ? completedLines() : completedLines().add(lastLine);
+    return new Writer(
+        refs,
+        refsLineNumber,
+        allLines,
+        trailingEmptyLines,
+        indentation,
+        tabs,
+        newline,
+        settings,
+        refWriter);
+  }
+
+  /**
+   * Replaces the content of this builder with the result of the given function applied to the
+   * content of this builder. This can be used to apply existing functions of the immutable {@link
+   * Writer} to the builder.
+   */
+  public WriterBuilder apply(UnaryOperator<Writer> f) {
+    f.apply(toWriter()).copyTo(this);
+    return this;
+  }
+
+  /** Returns a new builder without any content but the same settings. */
+  public WriterBuilder empty() {
+    final WriterBuilder builder = new WriterBuilder();
+    builder.set(
+        refs.emptySet(),
+        -1,
+        LineRope.single(Line.empty()),
+        1,
+        indentation,
+        0,
+        true,
+        settings,
+        refWriter);
+    return builder;
+  }
+
+  /** Saves the current state of this builder. */
+  public Snapshot snapshot() {
+    return new Snapshot(this, completedLines());
+  }
+
+  /**
+   * Restores the state of this builder when the given snapshot was taken. All changes made since
+   * then are discarded.
+   *
+   * @throws IllegalArgumentException if the snapshot was not taken from this builder
+   */
+  public WriterBuilder rollback(Snapshot snapshot) {
+    if (snapshot.builder != this) {
+      throw new IllegalArgumentException("Snapshot was not taken from this builder");
+    }
+    refs = snapshot.refs;
+    refsLineNumber = snapshot.refsLineNumber;
+    lines = snapshot.lines;
+    chunkSize = 0;
+    lastLine = snapshot.lastLine;
+    trailingEmptyLines = snapshot.trailingEmptyLines;
+    indentation = snapshot.indentation;
+    tabs = snapshot.tabs;
+    newline = snapshot.newline;
+    settings = snapshot.settings;
+    refWriter = snapshot.refWriter;
+    return this;
+  }
+
+  public WriterBuilder tab(int tabs) {
+    this.tabs = tabs;
+    return this;
+  }
+
+  public WriterBuilder append(Writer other) {
+    return append(0, other);
+  }
+
+  public WriterBuilder append(int tabs, Writer other) {
+    final int otherRefsLineNumber = other.getRefsLineNumber();
+    refsLineNumber = refsLineNumber > 0 ? refsLineNumber : otherRefsLineNumber;
+
+    final LineRope otherLines = other.getLinesDroppingLastNewline();
+    final LineRope indentedLines = otherLines.indent(tabs, indentation);
+    final LineRope linesDroppingLastNewline =
+        newline || lastLine == null ? completedLines() : completedLines().add(lastLine);
+    final int trailingEmptyLinesDroppingLastNewline =
+        newline ? trailingEmptyLines - 1 : trailingEmptyLines;
+
+    refs = refs.union(other.getRefSet());
+    lines = linesDroppingLastNewline.concat(indentedLines);
+    lastLine = Line.empty();
+    trailingEmptyLines =
+        Writer.trailingEmptyLinesOfConcat(
+                trailingEmptyLinesDroppingLastNewline,
+                tabs > 0 ? 0 : other.trailingEmptyLinesDroppingLastNewline(),
+                indentedLines)
+            + 1;
+    this.tabs = 0;
+    newline = true;
+    return this;
+  }
+
+  public WriterBuilder ref(String ref) {
+    refs = refs.add(ref);
+    return this;
+  }
+
+  public WriterBuilder refs(Iterable<String> ref) {
+    refs = refs.addAll(ref);
+    return this;
+  }
+
+  /** Returns the distinct refs sorted with the comparator of the {@link RefWriter}. */
+  public PList<String> getRefs() {
+    return refs.toPList();
+  }
+
+  /** Returns the number of distinct refs, see {@link Writer#refCount()}. */
+  public int refCount() {
+    return refs.size();
+  }
+
+  /** See {@link Writer#printRefs()}. */
+  public WriterBuilder printRefs() {
+    refsLineNumber = size() - (newline ? 1 : 0);
+    return this;
+  }
+
+  /** See {@link Writer#printSingleBlankLine()}. */
+  public WriterBuilder printSingleBlankLine() {
+    if (trailingEmptyLines >= 2) {
+      return this;
+    }
+    return println();
+  }
+
+  public WriterBuilder print(String string, Object... args) {
+    return appendToLastLine(Template.formatString(string, args));
+  }
+
+  /** Prints the template formatted with the given arguments, see {@link Template#format}. */
+  public WriterBuilder print(Template template, Object... args) {
+    return appendToLastLine(template.format(args));
+  }
+
+  public WriterBuilder print(char value) {
+    return appendToLastLine(PrimitiveStrings.of(value));
+  }
+
+  public WriterBuilder print(int value) {
+    return appendToLastLine(PrimitiveStrings.of(value));
+  }
+
+  public WriterBuilder println(char value) {
+    return print(value).println();
+  }
+
+  public WriterBuilder println(int value) {
+    return print(value).println();
+  }
+
+  public WriterBuilder println(String string) {
+    return print(string).println();
+  }
+
+  public WriterBuilder println(String string, Object... args) {
+    return print(string, args).println();
+  }
+
+  public WriterBuilder println(Template template, Object... args) {
+    return print(template, args).println();
+  }
+
+  public WriterBuilder println() {
+    if (lastLine != null) {
+      if (chunkSize == CHUNK_SIZE) {
+        lines = lines.concat(LineRope.copyOf(chunk, chunkSize));
+        chunkSize = 0;
+      }
+      chunk[chunkSize++] = lastLine;
+    }
+    lastLine = Line.empty();
+    trailingEmptyLines++;
+    tabs = 0;
+    newline = true;
+    return this;
+  }
+
+  /** See {@link Writer#resetToLastNotEmptyLine()}. */
+  public WriterBuilder resetToLastNotEmptyLine() {
+    final int lastNonEmptyIndex = size() - 1 - trailingEmptyLines;
+    if (lastNonEmptyIndex < 0) {
+      lines = LineRope.empty();
+      chunkSize = 0;
+      lastLine = null;
+    } else if (lastNonEmptyIndex < size() - 1) {
+      final Line newLastLine = get(lastNonEmptyIndex);
+      if (lastNonEmptyIndex >= lines.size()) {
+        chunkSize = lastNonEmptyIndex - lines.size();
+      } else {
+        lines = lines.take(lastNonEmptyIndex);
+        chunkSize = 0;
+      }
+      lastLine = newLastLine;
+    }
+    trailingEmptyLines = 0;
+    newline = false;
+    return this;
+  }
+
+  public WriterSettings getSettings() {
+    return settings;
+  }
+
+  /** Returns the number of lines, see {@link Writer#lineCount()}. */
+  public int lineCount() {
+    return size();
+  }
+
+  /** Returns the number of characters of the lines, see {@link Writer#characterCount(int)}. */
+  public long characterCount(int fromLine) {
+    long count = 0;
+    for (int i = fromLine; i < size(); i++) {
+      count += get(i).renderedLength();
+    }
+    return count;
+  }
+
+  /** Returns the content of this builder as string, see {@link Writer#asString()}. */
+  public String asString() {
+    return toWriter().asString();
+  }
+
+  private WriterBuilder appendToLastLine(String fragment) {
+    if (lastLine != null) {
+      final Line line = lastLine.append(fragment);
+      lastLine = newline ? line.indent(tabs, indentation) : line;
+      trailingEmptyLines = 0;
+    }
+    newline = false;
+    return this;
+  }
+
+  /** Moves the lines of the chunk to the persistent lines and returns them. */
+  private LineRope completedLines() {
+    if (chunkSize > 0) {
+      lines = lines.concat(LineRope.copyOf(chunk, chunkSize));
+      chunkSize = 0;
+    }
+    return lines;
+  }
+
+  private int size() {
+    return lines.size() + chunkSize + (lastLine == null ? 0 : 1);
+  }
+
+  private Line get(int index) {
+    final int linesSize = lines.size();
+    if (index < linesSize) {
+      return lines.get(index);
+    }
+    final int chunkIndex = index - linesSize;
+    return chunkIndex < chunkSize ? chunk[chunkIndex] : lastLine;
+  }
+
+  /** Saved state of a {@link WriterBuilder}, see {@link WriterBuilder#snapshot()}. */
+  public static final class Snapshot {
+    private final WriterBuilder builder;
+    private final RefSet refs;
+    private final int refsLineNumber;
+    private final LineRope lines;
+    private final Line lastLine;
+    private final int trailingEmptyLines;
+    private final Indentation indentation;
+    private final int tabs;
+    private final boolean newline;
+    private final WriterSettings settings;
+    private final RefWriter refWriter;
+
+    private Snapshot(WriterBuilder builder, LineRope lines) {
+      this.builder = builder;
+      this.refs = builder.refs;
+      this.refsLineNumber = builder.refsLineNumber;
+      this.lines = lines;
+      this.lastLine = builder.lastLine;
+      this.trailingEmptyLines = builder.trailingEmptyLines;
+      this.indentation = builder.indentation;
+      this.tabs = builder.tabs;
+      this.newline = builder.newline;
+      this.settings = builder.settings;
+      this.refWriter = builder.refWriter;
+    }
+  }
+}
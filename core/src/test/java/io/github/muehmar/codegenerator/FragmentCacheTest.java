@@ -0,0 +1,46 @@
+package io.github.muehmar.codegenerator;
+
+import static io.github.muehmar.codegenerator.writer.Writer.javaWriter;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import org.junit.jupiter.api.Test;
+
+class FragmentCacheTest {
+  @Test
+  void get_when_maxWeightExceeded_then_leastRecentlyUsedFragmentEvicted() {
+    final FragmentCache cache = FragmentCache.withMaxWeight(10);
+    cache.get("a", () -> javaWriter().println("aaaa"));
+    cache.get("b", () -> javaWriter().println("bbbb"));
+    cache.get("a", () -> javaWriter().println("not rendered"));
+
+    cache.get("c", () -> javaWriter().println("cccc"));
+
+    final Writer b = cache.get("b", () -> javaWriter().println("new b"));
+    final Writer a = cache.get("a", () -> javaWriter().println("new a"));
+    assertThat(b.asString()).isEqualTo("new b");
+    assertThat(a.asString()).isEqualTo("new a");
+    assertThat(cache.stats().getEvictionCount()).isEqualTo(3L);
+    assertThat(cache.stats().getWeight()).isEqualTo(10L);
+  }
+
+  @Test
+  void get_when_fragmentHeavierThanMaxWeight_then_notCached() {
+    final FragmentCache cache = FragmentCache.withMaxWeight(3);
+
+    cache.get("a", () -> javaWriter().println("aaaa"));
+    cache.get("a", () -> javaWriter().println("aaaa"));
+
+    final FragmentCache.Stats stats = cache.stats();
+    assertThat(stats.getMissCount()).isEqualTo(2L);
+    assertThat(stats.getSize()).isEqualTo(0);
+    assertThat(stats.hitRate()).isEqualTo(0.0);
+  }
+
+  @Test
+  void withMaxWeight_when_negative_then_throws() {
+    assertThatThrownBy(() -> FragmentCache.withMaxWeight(-1))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
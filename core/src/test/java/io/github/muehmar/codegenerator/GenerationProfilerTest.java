@@ -0,0 +1,165 @@
+package io.github.muehmar.codegenerator;
+
+import static io.github.muehmar.codegenerator.TestData.noData;
+import static io.github.muehmar.codegenerator.TestSettings.noSettings;
+import static io.github.muehmar.codegenerator.writer.Writer.javaWriter;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.muehmar.codegenerator.GenerationProfiler.Span;
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics;
+import io.github.muehmar.codegenerator.metrics.InProcessGenerationMetrics;
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.Test;
+
+class GenerationProfilerTest {
+  private static final Generator<Void, Void> CLASS_GEN =
+      Generator.<Void, Void>constant("class A {")
+          .append(
+              Generator.<Void, Void>constant("int a;").append(constant("int bc;")).named("fields"),
+              1)
+          .append(Generator.<Void, Void>constant("}").named("end"))
+          .named("class");
+
+  private static <A, B> Generator<A, B> constant(String text) {
+    return Generator.constant(text);
+  }
+
+  @Test
+  void named_when_profilerStarted_then_spansRecordedWithPathsLinesAndCharacters() {
+    final GenerationProfiler profiler = GenerationProfiler.create().start();
+    try {
+      CLASS_GEN.generate(noData(), noSettings(), javaWriter());
+      final WriterBuilder builder = javaWriter().toBuilder();
+      CLASS_GEN.generate(noData(), noSettings(), builder);
+    } finally {
+      profiler.stop();
+    }
+
+    assertThat(profiler.spans().map(Span::getPath))
+        .containsExactly("class", "class;end", "class;fields");
+    final Span classSpan = profiler.spans().apply(0);
+    final Span fieldsSpan = profiler.spans().apply(2);
+    assertThat(classSpan.getCalls()).isEqualTo(2L);
+    assertThat(classSpan.getLines()).isEqualTo(8L);
+    assertThat(classSpan.getCharacters()).isEqualTo(2L * (9 + 8 + 9 + 1));
+    assertThat(fieldsSpan.getLines()).isEqualTo(4L);
+    assertThat(fieldsSpan.getName()).isEqualTo("fields");
+    assertThat(classSpan.getInclusiveNanos())
+        .isGreaterThanOrEqualTo(classSpan.getExclusiveNanos() + fieldsSpan.getInclusiveNanos());
+    assertThat(profiler.collapsedStacks()).startsWith("class ").contains("\nclass;fields ");
+    assertThat(profiler.summary()).contains("fields");
+  }
+
+  @Test
+  void named_when_elementsGeneratedInParallel_then_nestedInEnclosingSpanWithoutWaitingTime() {
+    final Generator<Integer, Void> elementGen =
+        Generator.<Integer, Void>of(
+                (i, settings, writer) -> {
+                  LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+                  return writer.println("element %d", i);
+                })
+            .named("element");
+    final Generator<Void, Void> listGen =
+        Generator.<Void, Void>emptyGen()
+            .appendListParallel(
+                elementGen, data -> Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), Generator.emptyGen(), 0)
+            .named("list");
+
+    final GenerationProfiler profiler = GenerationProfiler.create().start();
+    try {
+      listGen.generate(noData(), noSettings(), javaWriter());
+    } finally {
+      profiler.stop();
+    }
+
+    assertThat(profiler.spans().map(Span::getPath)).containsExactly("list", "list;element");
+    final Span listSpan = profiler.spans().apply(0);
+    final Span elementSpan = profiler.spans().apply(1);
+    assertThat(elementSpan.getCalls()).isEqualTo(8L);
+    assertThat(listSpan.getExclusiveNanos()).isLessThan(TimeUnit.MILLISECONDS.toNanos(20));
+  }
+
+  @Test
+  void named_when_writersAllocated_then_countedInSpanAndEnclosingSpans() {
+    final Generator<Void, Void> inner =
+        Generator.<Void, Void>of(
+                (data, settings, writer) -> {
+                  javaWriter();
+                  javaWriter();
+                  return writer;
+                })
+            .named("inner");
+    final Generator<Void, Void> outer =
+        Generator.<Void, Void>of(
+                (data, settings, writer) -> {
+                  javaWriter();
+                  return inner.generate(data, settings, inner.generate(data, settings, writer));
+                })
+            .named("outer");
+    final Writer writer = javaWriter();
+
+    final GenerationProfiler profiler = GenerationProfiler.create().start();
+    try {
+      outer.generate(noData(), noSettings(), writer);
+    } finally {
+      profiler.stop();
+    }
+
+    assertThat(profiler.spans().map(Span::getPath)).containsExactly("outer", "outer;inner");
+    assertThat(profiler.spans().apply(0).getWritersAllocated()).isEqualTo(5L);
+    assertThat(profiler.spans().apply(1).getWritersAllocated()).isEqualTo(4L);
+    assertThat(profiler.summary()).contains("Writers");
+  }
+
+  @Test
+  void start_when_metricsInstalled_then_metricsStillReceiveEventsAndReinstalledOnStop() {
+    final InProcessGenerationMetrics metrics = InProcessGenerationMetrics.create().install();
+    try {
+      final GenerationProfiler profiler = GenerationProfiler.create().start();
+      try {
+        CLASS_GEN.generate(noData(), noSettings(), javaWriter());
+      } finally {
+        profiler.stop();
+      }
+
+      assertThat(metrics.getGenerateLatency().getCount()).isEqualTo(3L);
+      assertThat(profiler.spans().apply(0).getWritersAllocated()).isGreaterThan(0L);
+      assertThat(GenerationMetrics.installed()).isSameAs(metrics);
+    } finally {
+      GenerationMetrics.uninstall();
+    }
+  }
+
+  @Test
+  void stop_when_noMetricsInstalledBefore_then_noMetricsInstalled() {
+    GenerationProfiler.create().start().stop();
+
+    assertThat(GenerationMetrics.installed()).isNull();
+  }
+
+  @Test
+  void named_when_noProfilerStarted_then_nothingRecordedAndSameOutput() {
+    final GenerationProfiler profiler = GenerationProfiler.create();
+
+    final String output = CLASS_GEN.generate(noData(), noSettings(), javaWriter()).asString();
+
+    assertThat(output).isEqualTo("class A {\n  int a;\n  int bc;\n}");
+    assertThat(profiler.spans().isEmpty()).isTrue();
+  }
+
+  @Test
+  void start_when_otherProfilerStarted_then_throws() {
+    final GenerationProfiler profiler = GenerationProfiler.create().start();
+    try {
+      assertThatThrownBy(() -> GenerationProfiler.create().start())
+          .isInstanceOf(IllegalStateException.class);
+    } finally {
+      profiler.stop();
+    }
+  }
+}
@@ -13,8 +13,13 @@ import io.github.muehmar.codegenerator.TestData.BooleanData;
 import io.github.muehmar.codegenerator.TestData.ListData;
 import io.github.muehmar.codegenerator.TestData.StringData;
 import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterBuilder;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
 
 class GeneratorTest {
@@ -254,4 +259,227 @@ class GeneratorTest {
 
     assertThat(writer.asString()).isEqualTo("ff");
   }
+
+  @Test
+  void ofBuilder_when_created_then_correctOutput() {
+    final Generator<Void, Void> gen =
+        Generator.ofBuilder((data, settings, builder) -> builder.println("Hello World!"));
+    final Writer writer = gen.generate(noData(), noSettings(), javaWriter());
+    assertThat(writer.asString()).isEqualTo("Hello World!");
+  }
+
+  @Test
+  void generateWithBuilder_when_combinedWithWriterLambdas_then_sameOutputAsWithWriter() {
+    final Generator<ListData<StringData>, Void> gen =
+        Generator.<ListData<StringData>, Void>constant("Start")
+            .appendList(
+                ofWriterFunction(w -> w.println("Element")),
+                ListData::getList,
+                (data, settings, writer) -> writer.println(",").ref("java.util.List"))
+            .append(Generator.ofBuilder((data, settings, builder) -> builder.println("End")), 2)
+            .appendSingleBlankLine()
+            .append(w -> w.printRefs());
+    final ListData<StringData> data = TestData.stringListData("a", "b", "c");
+
+    final WriterBuilder builder = javaWriter().toBuilder();
+    gen.generate(data, noSettings(), builder);
+
+    final Writer writer = gen.generate(data, noSettings(), javaWriter());
+    assertThat(builder.asString()).isEqualTo(writer.asString());
+  }
+
+  @Test
+  void appendList_when_millionElements_then_noStackOverflow() {
+    final Generator<Integer, Void> elementGen = (i, settings, writer) -> writer.println(i);
+    final Generator<List<Integer>, Void> gen =
+        Generator.<List<Integer>, Void>emptyGen()
+            .appendList(elementGen, Function.identity(), ofWriterFunction(w -> w.print(",")));
+    final List<Integer> data = IntStream.range(0, 1_000_000).boxed().collect(Collectors.toList());
+
+    final String output = gen.generate(data, noSettings(), javaWriter()).asString();
+
+    assertThat(output).startsWith("0\n,1\n,2\n").endsWith(",999999");
+  }
+
+  @Test
+  void append_when_millionGeneratorsAppendedInLoop_then_noStackOverflow() {
+    Generator<Void, Void> gen = Generator.emptyGen();
+    for (int i = 0; i < 1_000_000; i++) {
+      final int number = i;
+      gen = gen.append(w -> w.println(number));
+    }
+
+    final String output = gen.generate(noData(), noSettings(), javaWriter()).asString();
+    final WriterBuilder builder = javaWriter().toBuilder();
+    gen.generate(noData(), noSettings(), builder);
+
+    assertThat(output).startsWith("0\n1\n2\n").endsWith("\n999999");
+    assertThat(builder.asString()).isEqualTo(output);
+  }
+
+  @Test
+  void append_when_deeplyRightNestedAppends_then_noStackOverflow() {
+    Generator<Void, Void> gen = constant("last");
+    for (int i = 0; i < 100_000; i++) {
+      gen = Generator.<Void, Void>constant("line").append(gen);
+    }
+
+    final String output = gen.generate(noData(), noSettings(), javaWriter()).asString();
+
+    assertThat(output).startsWith("line\nline\n").endsWith("line\nlast");
+  }
+
+  @Test
+  void compile_when_constantsAndEmptyGenerators_then_fusedIntoSingleText() {
+    final Generator<Void, Void> mappedConstant =
+        Generator.<Void, Void>constant("100%% constant").contraMap(Function.identity());
+    final Generator<Void, Void> gen =
+        Generator.<Void, Void>constant("Hello %s!", "World")
+            .append(Generator.emptyGen())
+            .appendNewLine()
+            .append(mappedConstant)
+            .append(Generator.<Void, Void>emptyGen().append(constant("Last")));
+
+    final Generator<Void, Void> compiled = gen.compile();
+
+    assertThat(compiled).isInstanceOf(Text.class);
+    assertThat(compiled.generate(noData(), noSettings(), javaWriter()).asString())
+        .isEqualTo(gen.generate(noData(), noSettings(), javaWriter()).asString());
+  }
+
+  @Test
+  void compile_when_mixedWithDataDependentGenerators_then_sameOutput() {
+    final Generator<BooleanData, Void> gen =
+        Generator.<BooleanData, Void>constant("Start")
+            .append(constant("Second"))
+            .appendConditionally(constant("Flag set"), BooleanData::isFlag)
+            .append((data, settings, writer) -> writer.println("Flag: %s", data.isFlag()))
+            .append(Generator.<Boolean, Void>emptyGen(), BooleanData::isFlag)
+            .append(constant("End"), 1);
+
+    final Generator<BooleanData, Void> compiled = gen.compile();
+
+    for (boolean flag : new boolean[] {true, false}) {
+      final WriterBuilder builder = javaWriter().toBuilder();
+      compiled.generate(booleanData(flag), noSettings(), builder);
+      final String expected =
+          gen.generate(booleanData(flag), noSettings(), javaWriter()).asString();
+
+      assertThat(compiled.generate(booleanData(flag), noSettings(), javaWriter()).asString())
+          .isEqualTo(expected);
+      assertThat(builder.asString()).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  void memoize_when_sameKeyGeneratedTwice_then_renderedOnceWithSameOutputAndRefs() {
+    final AtomicInteger renderCount = new AtomicInteger();
+    final FragmentCache cache = FragmentCache.withMaxWeight(1024);
+    final Generator<BooleanData, Void> gen =
+        Generator.<BooleanData, Void>of(
+                (data, settings, writer) -> {
+                  renderCount.incrementAndGet();
+                  return writer.println("Flag: %s", data.isFlag()).ref("java.util.List");
+                })
+            .memoize(BooleanData::isFlag, cache);
+    final Generator<BooleanData, Void> classGen =
+        Generator.<BooleanData, Void>constant("package io.github;")
+            .append(Writer::printRefs)
+            .append(constant("class A {"))
+            .append(gen, 1)
+            .append(constant("}"));
+
+    final Writer first = classGen.generate(booleanData(true), noSettings(), javaWriter());
+    final Writer second = classGen.generate(booleanData(true), noSettings(), javaWriter());
+    final WriterBuilder builder = javaWriter().toBuilder();
+    classGen.generate(booleanData(true), noSettings(), builder);
+    classGen.generate(booleanData(false), noSettings(), javaWriter());
+
+    assertThat(renderCount.get()).isEqualTo(2);
+    assertThat(first.asString())
+        .isEqualTo("package io.github;\nimport java.util.List;\nclass A {\n  Flag: true\n}")
+        .isEqualTo(second.asString())
+        .isEqualTo(builder.asString());
+    assertThat(cache.stats()).isEqualTo(new FragmentCache.Stats(2, 2, 0, 2, 21, 1024));
+  }
+
+  @Test
+  void appendListParallel_when_aboveAndBelowThreshold_then_sameOutputAsAppendList() {
+    final Generator<Integer, Void> elementGen =
+        Generator.<Integer, Void>of(
+                (i, settings, writer) -> writer.println("public int get%d() {", i).ref("a.Ref" + i))
+            .append((i, settings, writer) -> writer.println("return %d;", i), 1)
+            .append(constant("}"));
+    final Function<Void, List<Integer>> elements =
+        ignore -> IntStream.range(0, 500).boxed().collect(Collectors.toList());
+    final Generator<Void, Void> sequential =
+        Generator.<Void, Void>constant("package a;")
+            .append(Writer::printRefs)
+            .append(constant("class A {"))
+            .appendList(elementGen, elements, Generator.newLine());
+
+    final String expected = sequential.generate(noData(), noSettings(), javaWriter()).asString();
+
+    for (int threshold : new int[] {0, 10_000}) {
+      final Generator<Void, Void> parallel =
+          Generator.<Void, Void>constant("package a;")
+              .append(Writer::printRefs)
+              .append(constant("class A {"))
+              .appendListParallel(elementGen, elements, Generator.newLine(), threshold);
+      final WriterBuilder builder = javaWriter().toBuilder();
+      parallel.generate(noData(), noSettings(), builder);
+
+      assertThat(parallel.generate(noData(), noSettings(), javaWriter()).asString())
+          .isEqualTo(expected);
+      assertThat(builder.asString()).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  void appendListParallel_when_inlineElementsAndSeparator_then_sameOutputAsAppendList() {
+    final Generator<String, Void> elementGen = (e, settings, writer) -> writer.print(e);
+    final Generator<Void, Void> separator = (data, settings, writer) -> writer.print(", ");
+    final Function<Void, List<String>> elements = ignore -> PList.of("a", "b", "c").toArrayList();
+
+    for (int threshold : new int[] {0, 100}) {
+      final Generator<Void, Void> parallel =
+          Generator.<Void, Void>ofWriterFunction(w -> w.print("List.of("))
+              .appendListParallel(elementGen, elements, separator, threshold)
+              .append(w -> w.print(")"));
+      final WriterBuilder builder = javaWriter().toBuilder();
+      parallel.generate(noData(), noSettings(), builder);
+
+      assertThat(parallel.generate(noData(), noSettings(), javaWriter()).asString())
+          .isEqualTo("List.of(a, b, c)");
+      assertThat(builder.asString()).isEqualTo("List.of(a, b, c)");
+    }
+  }
+
+  @Test
+  void appendListParallel_when_elementsContinueLinesAndUseTabs_then_sameOutputAsAppendList() {
+    final Generator<Integer, Void> elementGen =
+        (i, settings, writer) ->
+            i % 3 == 0
+                ? writer.print("case %d:", i).println().tab(2).print("return %d;", i).ref("a.R" + i)
+                : writer.print("value%d", i).println(" // comment").print("  tail");
+    final Generator<Void, Void> separator = (data, settings, writer) -> writer.println().tab(1);
+    final Function<Void, List<Integer>> elements =
+        ignore -> IntStream.range(0, 50).boxed().collect(Collectors.toList());
+    final Generator<Void, Void> prefix =
+        (data, settings, writer) -> writer.println("package a;").printRefs().tab(1);
+
+    final String expected =
+        prefix
+            .appendList(elementGen, elements, separator)
+            .generate(noData(), noSettings(), javaWriter())
+            .asString();
+
+    final Generator<Void, Void> parallel =
+        prefix.appendListParallel(elementGen, elements, separator, 0);
+    final WriterBuilder builder = javaWriter().toBuilder();
+    parallel.generate(noData(), noSettings(), builder);
+    assertThat(parallel.generate(noData(), noSettings(), javaWriter()).asString())
+        .isEqualTo(expected);
+    assertThat(builder.asString()).isEqualTo(expected);
+  }
 }
@@ -0,0 +1,153 @@
+package io.github.muehmar.codegenerator.batch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GeneratedSourceSetTest {
+  private static final FileTime OLD_TIME = FileTime.fromMillis(1_000_000_000_000L);
+
+  @TempDir private Path directory;
+
+  @Test
+  void write_when_emptyDirectory_then_filesAndManifestWritten() throws Exception {
+    final SourceSetResult result =
+        GeneratedSourceSet.of(directory)
+            .withThreads(2)
+            .write(sources("pkg/A.java", "class A {}", "pkg/sub/B.java", "class B {}"));
+
+    assertThat(result.getWritten())
+        .containsExactly(directory.resolve("pkg/A.java"), directory.resolve("pkg/sub/B.java"));
+    assertThat(result.getUnchanged().isEmpty()).isTrue();
+    assertThat(read(directory.resolve("pkg/sub/B.java"))).isEqualTo("class B {}");
+    assertThat(read(directory.resolve(GeneratedSourceSet.DEFAULT_MANIFEST_NAME)))
+        .matches("[0-9a-f]{64}\tpkg/A\\.java\n[0-9a-f]{64}\tpkg/sub/B\\.java\n");
+  }
+
+  @Test
+  void write_when_contentUnchanged_then_fileNotTouched() throws Exception {
+    final GeneratedSourceSet sourceSet = GeneratedSourceSet.of(directory);
+    sourceSet.write(sources("A.java", "class A {}", "B.java", "class B {}"));
+    Files.setLastModifiedTime(directory.resolve("A.java"), OLD_TIME);
+    Files.setLastModifiedTime(directory.resolve("B.java"), OLD_TIME);
+
+    final SourceSetResult result =
+        sourceSet.write(sources("A.java", "class A {}", "B.java", "class B { int b; }"));
+
+    assertThat(result.getUnchanged()).containsExactly(directory.resolve("A.java"));
+    assertThat(result.getWritten()).containsExactly(directory.resolve("B.java"));
+    assertThat(Files.getLastModifiedTime(directory.resolve("A.java"))).isEqualTo(OLD_TIME);
+    assertThat(read(directory.resolve("B.java"))).isEqualTo("class B { int b; }");
+  }
+
+  @Test
+  void write_when_fileModifiedOutsideSourceSet_then_fileRestored() throws Exception {
+    final GeneratedSourceSet sourceSet = GeneratedSourceSet.of(directory);
+    sourceSet.write(sources("A.java", "class A {}"));
+    Files.write(directory.resolve("A.java"), "class X {}".getBytes(UTF_8));
+
+    final SourceSetResult result = sourceSet.write(sources("A.java", "class A {}"));
+
+    assertThat(result.getWritten()).containsExactly(directory.resolve("A.java"));
+    assertThat(read(directory.resolve("A.java"))).isEqualTo("class A {}");
+  }
+
+  @Test
+  void write_when_largeContentUnchanged_then_fileNotTouched() throws Exception {
+    final String content = largeContent();
+    final GeneratedSourceSet sourceSet = GeneratedSourceSet.of(directory);
+    sourceSet.write(sources("A.java", content));
+    Files.setLastModifiedTime(directory.resolve("A.java"), OLD_TIME);
+
+    final SourceSetResult result = sourceSet.write(sources("A.java", content));
+
+    assertThat(result.getUnchanged()).containsExactly(directory.resolve("A.java"));
+    assertThat(Files.getLastModifiedTime(directory.resolve("A.java"))).isEqualTo(OLD_TIME);
+  }
+
+  @Test
+  void write_when_largeFileModifiedWithSameSize_then_fileRestored() throws Exception {
+    final String content = largeContent();
+    final GeneratedSourceSet sourceSet = GeneratedSourceSet.of(directory);
+    sourceSet.write(sources("A.java", content));
+    final String modified = content.substring(0, content.length() - 2) + "X\n";
+    Files.write(directory.resolve("A.java"), modified.getBytes(UTF_8));
+
+    final SourceSetResult result = sourceSet.write(sources("A.java", content));
+
+    assertThat(result.getWritten()).containsExactly(directory.resolve("A.java"));
+    assertThat(read(directory.resolve("A.java"))).isEqualTo(content);
+  }
+
+  @Test
+  void write_when_sourceNotProducedAnymore_then_staleFileAndEmptyDirectoriesDeleted()
+      throws Exception {
+    final GeneratedSourceSet sourceSet = GeneratedSourceSet.of(directory);
+    sourceSet.write(sources("A.java", "class A {}", "pkg/sub/B.java", "class B {}"));
+    Files.write(directory.resolve("Manual.java"), "class Manual {}".getBytes(UTF_8));
+
+    final SourceSetResult result = sourceSet.write(sources("A.java", "class A {}"));
+
+    assertThat(result.getDeleted()).containsExactly(directory.resolve("pkg/sub/B.java"));
+    assertThat(Files.exists(directory.resolve("pkg"))).isFalse();
+    assertThat(Files.exists(directory.resolve("Manual.java"))).isTrue();
+    assertThat(read(directory.resolve(GeneratedSourceSet.DEFAULT_MANIFEST_NAME)))
+        .doesNotContain("pkg/sub/B.java");
+  }
+
+  @Test
+  void write_when_fileCannotBeWritten_then_throwsAndStaleFilesKept() throws Exception {
+    final GeneratedSourceSet sourceSet = GeneratedSourceSet.of(directory);
+    sourceSet.write(sources("A.java", "class A {}", "Old.java", "class Old {}"));
+    Files.createDirectories(directory.resolve("B.java/blocked"));
+    final Map<Path, Writer> sources = sources("A.java", "class A {}", "B.java", "class B {}");
+
+    assertThatThrownBy(() -> sourceSet.write(sources))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("Unable to write 1 generated source(s)");
+    assertThat(Files.exists(directory.resolve("Old.java"))).isTrue();
+    assertThat(read(directory.resolve(GeneratedSourceSet.DEFAULT_MANIFEST_NAME)))
+        .contains("\tOld.java\n");
+  }
+
+  @Test
+  void write_when_pathOutsideDirectory_then_throws() {
+    final GeneratedSourceSet sourceSet = GeneratedSourceSet.of(directory);
+    final Map<Path, Writer> sources = sources("../A.java", "class A {}");
+
+    assertThatThrownBy(() -> sourceSet.write(sources))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static Map<Path, Writer> sources(String... pathsAndContents) {
+    final Map<Path, Writer> sources = new HashMap<>();
+    for (int i = 0; i < pathsAndContents.length; i += 2) {
+      final Writer writer = Writer.javaWriter().print(pathsAndContents[i + 1]);
+      sources.put(Paths.get(pathsAndContents[i]), writer);
+    }
+    return sources;
+  }
+
+  private static String largeContent() {
+    final StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      content.append("int field").append(i).append(";\n");
+    }
+    return content.toString();
+  }
+
+  private static String read(Path file) throws Exception {
+    return new String(Files.readAllBytes(file), UTF_8);
+  }
+}
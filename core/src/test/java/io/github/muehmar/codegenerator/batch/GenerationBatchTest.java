@@ -0,0 +1,164 @@
+package io.github.muehmar.codegenerator.batch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.bluecare.commons.data.PList;
+import io.github.muehmar.codegenerator.Generator;
+import io.github.muehmar.codegenerator.writer.RefWriter;
+import io.github.muehmar.codegenerator.writer.Writer;
+import io.github.muehmar.codegenerator.writer.WriterSettings;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GenerationBatchTest {
+  @TempDir private Path directory;
+
+  @Test
+  void run_when_jobFails_then_otherJobsWrittenAndFailureReported() throws Exception {
+    final Generator<Integer, Void> generator =
+        (i, settings, writer) -> {
+          if (i == 3) {
+            throw new IllegalStateException("Failed " + i);
+          }
+          return writer.println("class A%d {}", i);
+        };
+
+    final BatchResult result =
+        GenerationBatch.of(generator, (Void) null)
+            .withThreads(4)
+            .withMaxInFlight(2)
+            .run(
+                IntStream.range(0, 20)
+                    .boxed()
+                    .map(i -> GenerationJob.of(i, directory.resolve("pkg/A" + i + ".java"))));
+
+    assertThat(result.getResults().size()).isEqualTo(20);
+    assertThat(result.getResults().apply(5).getTarget())
+        .isEqualTo(directory.resolve("pkg/A5.java"));
+    assertThat(result.getFailures().size()).isEqualTo(1);
+    assertThat(result.getFailures().apply(0).getFailure().get().getMessage())
+        .isEqualTo("Failed 3");
+    assertThat(new String(Files.readAllBytes(directory.resolve("pkg/A19.java")), UTF_8))
+        .isEqualTo("class A19 {}");
+    assertThat(Files.exists(directory.resolve("pkg/A3.java"))).isFalse();
+  }
+
+  @Test
+  void run_when_maxInFlightOne_then_jobsNeverExecutedConcurrently() throws Exception {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final Generator<Integer, Void> generator =
+        (i, settings, writer) -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          final String content = "class A" + i + " {}";
+          running.decrementAndGet();
+          return writer.println(content);
+        };
+
+    final BatchResult result =
+        GenerationBatch.of(generator, (Void) null)
+            .withThreads(4)
+            .withMaxInFlight(1)
+            .run(
+                IntStream.range(0, 50)
+                    .boxed()
+                    .map(i -> GenerationJob.of(i, directory.resolve("A" + i + ".java"))));
+
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(maxRunning.get()).isEqualTo(1);
+  }
+
+  @Test
+  void run_when_incrementalAndInputUnchanged_then_jobSkipped() throws Exception {
+    final AtomicInteger renderCount = new AtomicInteger();
+    final Generator<String, Void> generator =
+        (name, settings, writer) -> {
+          renderCount.incrementAndGet();
+          return writer.println("class %s {}", name);
+        };
+    final Path index = directory.resolve("index/generation.index");
+    final GenerationBatch<String, Void> batch =
+        GenerationBatch.of(generator, (Void) null)
+            .withIncremental(index, "1", (name, settings) -> name);
+
+    batch.run(Stream.of(job("A"), job("B")));
+    final BatchResult result = batch.run(Stream.of(job("A"), job("C")));
+
+    assertThat(renderCount.get()).isEqualTo(3);
+    assertThat(result.getResults().map(JobResult::isSkipped)).isEqualTo(PList.of(true, false));
+    assertThat(new String(Files.readAllBytes(directory.resolve("A.java")), UTF_8))
+        .isEqualTo("class A {}");
+    assertThat(Files.readAllLines(index, UTF_8).size()).isEqualTo(3);
+
+    GenerationBatch.of(generator, (Void) null)
+        .withIncremental(index, "2", (name, settings) -> name)
+        .run(Stream.of(job("A")));
+    assertThat(renderCount.get()).isEqualTo(4);
+  }
+
+  @Test
+  void run_when_fingerprintContainsTab_then_jobFailsWithoutWritingTarget() throws Exception {
+    final Generator<String, Void> generator =
+        (name, settings, writer) -> writer.println("class %s {}", name);
+
+    final BatchResult result =
+        GenerationBatch.of(generator, (Void) null)
+            .withIncremental(
+                directory.resolve("generation.index"), "1", (name, settings) -> name + "\t")
+            .run(Stream.of(job("A")));
+
+    assertThat(result.getFailures().size()).isEqualTo(1);
+    assertThat(result.getFailures().apply(0).getFailure().get())
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(Files.exists(directory.resolve("A.java"))).isFalse();
+  }
+
+  @Test
+  void run_when_writingFails_then_previousContentOfTargetKept() throws Exception {
+    final Path target = directory.resolve("A.java");
+    Files.write(target, "class A {}".getBytes(UTF_8));
+    final RefWriter failingRefWriter =
+        new RefWriter() {
+          @Override
+          public Comparator<String> sortComparator() {
+            return Comparator.naturalOrder();
+          }
+
+          @Override
+          public Predicate<String> filter() {
+            return ref -> true;
+          }
+
+          @Override
+          public String format(String ref) {
+            throw new IllegalStateException("Cannot format " + ref);
+          }
+        };
+    final Generator<String, Void> generator =
+        (name, settings, writer) ->
+            writer.printRefs().ref("a.B").println("class %s extends B {}", name);
+
+    final BatchResult result =
+        GenerationBatch.of(generator, (Void) null)
+            .withWriter(() -> Writer.create(failingRefWriter, WriterSettings.defaultSettings()))
+            .run(Stream.of(job("A")));
+
+    assertThat(result.getFailures().size()).isEqualTo(1);
+    assertThat(new String(Files.readAllBytes(target), UTF_8)).isEqualTo("class A {}");
+    try (Stream<Path> files = Files.list(directory)) {
+      assertThat(files.count()).isEqualTo(1L);
+    }
+  }
+
+  private GenerationJob<String> job(String name) {
+    return GenerationJob.of(name, directory.resolve(name + ".java"));
+  }
+}
@@ -0,0 +1,111 @@
+package io.github.muehmar.codegenerator.batch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SourceArchiveTest {
+  @TempDir private Path directory;
+
+  @Test
+  void write_when_sources_then_entriesSortedWithContentAndDefaultTimestamp() throws Exception {
+    final Path file = directory.resolve("out/sources.srcjar");
+
+    SourceArchive.of(file).write(sources("pkg/B.java", "class B {}", "pkg/A.java", "class A {}"));
+
+    try (ZipFile zipFile = new ZipFile(file.toFile())) {
+      final List<? extends ZipEntry> entries = Collections.list(zipFile.entries());
+      assertThat(names(entries)).containsExactly("pkg/A.java", "pkg/B.java");
+      assertThat(read(zipFile, entries.get(1))).isEqualTo("class B {}");
+      assertThat(entries.get(0).getMethod()).isEqualTo(ZipEntry.DEFLATED);
+      assertThat(entries.get(0).getTime()).isEqualTo(epochMillis(SourceArchive.DEFAULT_TIMESTAMP));
+    }
+  }
+
+  @Test
+  void write_when_storedEntries_then_entriesNotCompressed() throws Exception {
+    final Path file = directory.resolve("sources.srcjar");
+    final LocalDateTime timestamp = LocalDateTime.of(2020, 5, 17, 12, 30);
+
+    SourceArchive.of(file)
+        .withStoredEntries()
+        .withTimestamp(timestamp)
+        .write(sources("A.java", "class A {}", "B.java", "class B {}"));
+
+    try (ZipFile zipFile = new ZipFile(file.toFile())) {
+      final List<? extends ZipEntry> entries = Collections.list(zipFile.entries());
+      assertThat(names(entries)).containsExactly("A.java", "B.java");
+      assertThat(entries.get(0).getMethod()).isEqualTo(ZipEntry.STORED);
+      assertThat(entries.get(0).getTime()).isEqualTo(epochMillis(timestamp));
+      assertThat(read(zipFile, entries.get(0))).isEqualTo("class A {}");
+    }
+  }
+
+  @Test
+  void write_when_writtenTwiceInDifferentOrder_then_sameBytes() throws Exception {
+    final Path first = directory.resolve("first.srcjar");
+    final Path second = directory.resolve("second.srcjar");
+
+    SourceArchive.of(first).write(sources("A.java", "class A {}", "B.java", "class B {}"));
+    SourceArchive.of(second).write(sources("B.java", "class B {}", "A.java", "class A {}"));
+
+    assertThat(Files.readAllBytes(second)).isEqualTo(Files.readAllBytes(first));
+  }
+
+  @Test
+  void write_when_pathOutsideArchive_then_throws() {
+    final SourceArchive archive = SourceArchive.of(directory.resolve("sources.srcjar"));
+    final Map<Path, Writer> sources = sources("../A.java", "class A {}");
+
+    assertThatThrownBy(() -> archive.write(sources)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static Map<Path, Writer> sources(String... pathsAndContents) {
+    final Map<Path, Writer> sources = new LinkedHashMap<>();
+    for (int i = 0; i < pathsAndContents.length; i += 2) {
+      final Writer writer = Writer.javaWriter().print(pathsAndContents[i + 1]);
+      sources.put(Paths.get(pathsAndContents[i]), writer);
+    }
+    return sources;
+  }
+
+  private static List<String> names(List<? extends ZipEntry> entries) {
+    final List<String> names = new ArrayList<>();
+    entries.forEach(entry -> names.add(entry.getName()));
+    return names;
+  }
+
+  private static String read(ZipFile zipFile, ZipEntry entry) throws Exception {
+    try (InputStream in = zipFile.getInputStream(entry)) {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), UTF_8);
+    }
+  }
+
+  private static long epochMillis(LocalDateTime timestamp) {
+    return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+}
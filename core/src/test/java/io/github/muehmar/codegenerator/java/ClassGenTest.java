@@ -48,6 +48,31 @@ class ClassGenTest {
                 + "}");
   }
 
+  @Test
+  void compile_when_compiledGeneratorUsedForDifferentData_then_sameOutputAsUncompiled() {
+    final ClassGen<StringData, Void> generator =
+        ClassGenBuilder.<StringData, Void>create()
+            .clazz()
+            .topLevel()
+            .packageGen(PACKAGE_GEN)
+            .noJavaDoc()
+            .noAnnotations()
+            .modifiers(JavaModifier.PUBLIC)
+            .className((data, s) -> data.getText())
+            .noSuperClass()
+            .noInterfaces()
+            .content(Generator.constant("Content"))
+            .build();
+
+    final Generator<StringData, Void> compiled = generator.compile();
+
+    for (String className : PList.of("HelloWorld", "Customer")) {
+      final StringData data = new StringData(className);
+      assertThat(compiled.generate(data, noSettings(), javaWriter()).asString())
+          .isEqualTo(generator.generate(data, noSettings(), javaWriter()).asString());
+    }
+  }
+
   @Test
   void generate_when_javaDoc_then_correctGeneratedString() {
     final ClassGen<StringData, Void> generator =
@@ -297,6 +322,51 @@ class ClassGenTest {
         .isEqualTo("@Hello\n" + "@World\n" + "public class Hello {\n" + "}");
   }
 
+  @Test
+  void generate_when_parallelContent_then_sameOutputAsSequentialContent() {
+    final PList<Generator<StringData, Void>> content =
+        PList.range(0, 100)
+            .map(
+                i ->
+                    Generator.<StringData, Void>of(
+                            (data, s, w) ->
+                                w.println("public String %s%d() {", data.getText(), i)
+                                    .ref("java.util.Optional"))
+                        .append(Generator.constant("return null;"), 1)
+                        .append(Generator.constant("}"))
+                        .appendSingleBlankLine());
+    final ClassGen<StringData, Void> sequential =
+        ClassGenBuilder.<StringData, Void>create()
+            .clazz()
+            .topLevel()
+            .packageGen(PACKAGE_GEN)
+            .noJavaDoc()
+            .noAnnotations()
+            .modifiers(JavaModifier.PUBLIC)
+            .className((data, s) -> data.getText())
+            .noSuperClass()
+            .noInterfaces()
+            .content(content)
+            .build();
+    final ClassGen<StringData, Void> parallel =
+        ClassGenBuilder.<StringData, Void>create()
+            .clazz()
+            .topLevel()
+            .packageGen(PACKAGE_GEN)
+            .noJavaDoc()
+            .noAnnotations()
+            .modifiers(JavaModifier.PUBLIC)
+            .className((data, s) -> data.getText())
+            .noSuperClass()
+            .noInterfaces()
+            .parallelContent(content, 10)
+            .build();
+
+    final StringData data = new StringData("HelloWorld");
+    assertThat(parallel.generate(data, noSettings(), javaWriter()).asString())
+        .isEqualTo(sequential.generate(data, noSettings(), javaWriter()).asString());
+  }
+
   private static Stream<Arguments> publicAndFinalModifierUnordered() {
     return Stream.of(
         Arguments.of(PList.of(JavaModifier.FINAL, JavaModifier.PUBLIC)),
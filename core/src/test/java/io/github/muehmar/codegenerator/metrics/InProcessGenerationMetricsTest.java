@@ -0,0 +1,257 @@
+package io.github.muehmar.codegenerator.metrics;
+
+import static io.github.muehmar.codegenerator.TestData.noData;
+import static io.github.muehmar.codegenerator.TestSettings.noSettings;
+import static io.github.muehmar.codegenerator.writer.Writer.javaWriter;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.bluecare.commons.data.PList;
+import io.github.muehmar.codegenerator.Generator;
+import io.github.muehmar.codegenerator.batch.GeneratedSourceSet;
+import io.github.muehmar.codegenerator.batch.GenerationBatch;
+import io.github.muehmar.codegenerator.batch.GenerationJob;
+import io.github.muehmar.codegenerator.batch.SourceArchive;
+import io.github.muehmar.codegenerator.java.ClassGen;
+import io.github.muehmar.codegenerator.java.JavaGenerators;
+import io.github.muehmar.codegenerator.java.JavaModifier;
+import io.github.muehmar.codegenerator.java.MethodGen;
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InProcessGenerationMetricsTest {
+  @TempDir private Path directory;
+
+  @Test
+  void asString_when_metricsInstalled_then_writerRenderButNoFileRecorded() {
+    final Writer writer = javaWriter().println("class A {").tab(1).println("int a;").print("}");
+    final InProcessGenerationMetrics metrics = InProcessGenerationMetrics.create().install();
+    try {
+      writer.asString();
+      writer.writeTo(Channels.newChannel(new ByteArrayOutputStream()));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      GenerationMetrics.uninstall();
+    }
+
+    assertThat(metrics.getWriterRenders()).isEqualTo(2L);
+    assertThat(metrics.getWriterRenderLatency().getCount()).isEqualTo(2L);
+    assertThat(metrics.getFilesRendered()).isEqualTo(0L);
+  }
+
+  @Test
+  void write_when_sourceSetWritten_then_fileLinesAndBytesRecorded() throws Exception {
+    final Writer writer =
+        javaWriter().println("package a;").printRefs().ref("java.util.List").println("class Ä {}");
+    final InProcessGenerationMetrics metrics = InProcessGenerationMetrics.create().install();
+    try {
+      GeneratedSourceSet.of(directory)
+          .withThreads(1)
+          .write(Collections.singletonMap(Paths.get("a/A.java"), writer));
+    } finally {
+      GenerationMetrics.uninstall();
+    }
+
+    assertThat(metrics.getFilesRendered()).isEqualTo(1L);
+    assertThat(metrics.getLinesRendered()).isEqualTo((long) writer.lineCount());
+    assertThat(metrics.getBytesRendered())
+        .isEqualTo((long) writer.asString().getBytes(StandardCharsets.UTF_8).length);
+    assertThat(metrics.getFileLatency().getCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void write_when_archiveWritten_then_everyEntryRecordedAsFile() throws Exception {
+    final Map<Path, Writer> sources = new HashMap<>();
+    sources.put(Paths.get("a/A.java"), javaWriter().println("class A {}"));
+    sources.put(Paths.get("a/B.java"), javaWriter().println("class B {}"));
+    final InProcessGenerationMetrics metrics = InProcessGenerationMetrics.create().install();
+    try {
+      SourceArchive.of(directory.resolve("sources.jar")).write(sources);
+    } finally {
+      GenerationMetrics.uninstall();
+    }
+
+    assertThat(metrics.getFilesRendered()).isEqualTo(2L);
+    assertThat(metrics.getBytesRendered()).isEqualTo(20L);
+  }
+
+  @Test
+  void run_when_classWithMethodsGenerated_then_oneFileButMoreWriterRendersRecorded()
+      throws Exception {
+    final MethodGen<String, Void> method =
+        JavaGenerators.<String, Void>methodGen()
+            .modifiers(JavaModifier.PUBLIC)
+            .noGenericTypes()
+            .returnType("String")
+            .methodName(name -> name)
+            .noArguments()
+            .doesNotThrow()
+            .contentWriter(w -> w.println("return null;"))
+            .build();
+    final ClassGen<String, Void> classGen =
+        JavaGenerators.<String, Void>classGen()
+            .clazz()
+            .topLevel()
+            .packageGen(Generator.constant("package a;"))
+            .noJavaDoc()
+            .noAnnotations()
+            .modifiers(JavaModifier.PUBLIC)
+            .className((data, settings) -> data)
+            .noSuperClass()
+            .noInterfaces()
+            .content(
+                Generator.<String, Void>emptyGen()
+                    .appendList(method, data -> PList.of("getA", "getB", "getC")))
+            .build();
+    final InProcessGenerationMetrics metrics = InProcessGenerationMetrics.create().install();
+    try {
+      GenerationBatch.of(classGen, (Void) null)
+          .withThreads(1)
+          .run(Stream.of(GenerationJob.of("A", directory.resolve("a/A.java"))));
+    } finally {
+      GenerationMetrics.uninstall();
+    }
+
+    assertThat(metrics.getFilesRendered()).isEqualTo(1L);
+    assertThat(metrics.getWriterRenders()).isGreaterThan(1L);
+  }
+
+  @Test
+  void ref_when_refAlreadyPresent_then_refsDeduplicatedRecorded() {
+    final InProcessGenerationMetrics metrics = InProcessGenerationMetrics.create().install();
+    try {
+      javaWriter()
+          .ref("java.util.List")
+          .ref("java.util.List")
+          .refs(Arrays.asList("java.util.Map", "java.util.List", "java.util.Map"))
+          .toBuilder()
+          .ref("java.util.Map");
+    } finally {
+      GenerationMetrics.uninstall();
+    }
+
+    assertThat(metrics.getRefsDeduplicated()).isEqualTo(4L);
+    assertThat(metrics.getWritersAllocated()).isEqualTo(5L);
+  }
+
+  @Test
+  void generate_when_namedGenerator_then_generateLatencyRecorded() {
+    final Generator<Void, Void> gen =
+        Generator.<Void, Void>constant("a").append(Generator.constant("b")).named("ab");
+    final InProcessGenerationMetrics metrics = InProcessGenerationMetrics.create().install();
+    try {
+      gen.generate(noData(), noSettings(), javaWriter());
+      gen.generate(noData(), noSettings(), javaWriter().toBuilder());
+    } finally {
+      GenerationMetrics.uninstall();
+    }
+
+    assertThat(metrics.getGenerateLatency().getCount()).isEqualTo(2L);
+    assertThat(metrics.getWriterRenders()).isEqualTo(0L);
+  }
+
+  @Test
+  void asString_when_metricsNotInstalled_then_nothingRecorded() {
+    final InProcessGenerationMetrics metrics = InProcessGenerationMetrics.create();
+
+    javaWriter().println("class A {}").ref("java.util.List").ref("java.util.List").asString();
+
+    assertThat(metrics.getWriterRenders()).isEqualTo(0L);
+    assertThat(metrics.getWritersAllocated()).isEqualTo(0L);
+    assertThat(metrics.getRefsDeduplicated()).isEqualTo(0L);
+  }
+
+  @Test
+  void and_when_installed_then_bothInstancesReceiveEvents() {
+    final InProcessGenerationMetrics first = InProcessGenerationMetrics.create();
+    final InProcessGenerationMetrics second = InProcessGenerationMetrics.create();
+    GenerationMetrics.install(first.and(second));
+    try {
+      javaWriter().println("class A {}").asString();
+    } finally {
+      GenerationMetrics.uninstall();
+    }
+
+    assertThat(first.getWriterRenders()).isEqualTo(1L);
+    assertThat(second.getWriterRenders()).isEqualTo(1L);
+    assertThat(second.getWritersAllocated()).isEqualTo(first.getWritersAllocated());
+  }
+
+  @Test
+  void reset_when_called_then_countersAndHistogramsCleared() {
+    final InProcessGenerationMetrics metrics = InProcessGenerationMetrics.create();
+    metrics.rendered(null, 10, 100, 2, 5000);
+    metrics.fileGenerated(null, "A.java", 10, 100, 2, 8000);
+    metrics.refsDeduplicated(2);
+
+    metrics.reset();
+
+    assertThat(metrics.getFilesRendered()).isEqualTo(0L);
+    assertThat(metrics.getBytesRendered()).isEqualTo(0L);
+    assertThat(metrics.getWriterRenders()).isEqualTo(0L);
+    assertThat(metrics.getRefsDeduplicated()).isEqualTo(0L);
+    assertThat(metrics.getFileLatency().getCount()).isEqualTo(0L);
+    assertThat(metrics.getWriterRenderLatency().getCount()).isEqualTo(0L);
+  }
+
+  @Test
+  void getWriterRenderLatency_when_durationsRecorded_then_percentilesWithinBucketPrecision() {
+    final InProcessGenerationMetrics metrics = InProcessGenerationMetrics.create();
+    for (int i = 1; i <= 100; i++) {
+      metrics.rendered(null, 1, 1, 0, i * 1000L);
+    }
+
+    final LatencySummary latency = metrics.getWriterRenderLatency();
+
+    assertThat(latency.getCount()).isEqualTo(100L);
+    assertThat(latency.getMeanMicros()).isEqualTo(50.5);
+    assertThat(latency.getP50Micros()).isBetween(50.0, 62.5);
+    assertThat(latency.getP99Micros()).isBetween(99.0, 123.75);
+    assertThat(latency.getMaxMicros()).isEqualTo(100.0);
+  }
+
+  @Test
+  void registerPlatformMBean_when_registered_then_attributesReadableViaJmx() throws Exception {
+    final InProcessGenerationMetrics metrics =
+        InProcessGenerationMetrics.create().registerPlatformMBean();
+    try {
+      metrics.fileGenerated(null, "A.java", 3, 42, 1, 2000);
+
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName name = new ObjectName(InProcessGenerationMetrics.OBJECT_NAME);
+      assertThat(server.getAttribute(name, "FilesRendered")).isEqualTo(1L);
+      assertThat(server.getAttribute(name, "BytesRendered")).isEqualTo(42L);
+      final CompositeData latency = (CompositeData) server.getAttribute(name, "FileLatency");
+      assertThat(latency.get("count")).isEqualTo(1L);
+    } finally {
+      InProcessGenerationMetrics.unregisterPlatformMBean();
+    }
+  }
+
+  @Test
+  void bucket_when_value_then_upperBoundNotBelowValueAndWithinQuarter() {
+    for (long value = 0; value < 100_000; value += 7) {
+      final long upperBound = LatencyHistogram.upperBound(LatencyHistogram.bucket(value));
+      assertThat(upperBound).isBetween(value, value + value / 4);
+    }
+    assertThat(LatencyHistogram.upperBound(LatencyHistogram.bucket(Long.MAX_VALUE)))
+        .isEqualTo(Long.MAX_VALUE);
+  }
+}
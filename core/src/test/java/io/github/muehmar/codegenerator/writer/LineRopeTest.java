@@ -0,0 +1,113 @@
+package io.github.muehmar.codegenerator.writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LineRopeTest {
+  @Test
+  void add_when_manyLinesAdded_then_orderPreservedAndHeightLogarithmic() {
+    LineRope rope = LineRope.empty();
+    for (int i = 0; i < 10_000; i++) {
+      rope = rope.add(Line.ofString("line " + i));
+    }
+
+    assertThat(rope.size()).isEqualTo(10_000);
+    assertThat(rope.get(0).asString()).isEqualTo("line 0");
+    assertThat(rope.get(5_000).asString()).isEqualTo("line 5000");
+    assertThat(rope.last().asString()).isEqualTo("line 9999");
+    assertThat(rope.height() <= 2 * log2(10_000)).isTrue();
+  }
+
+  @Test
+  void concat_when_ropesOfDifferentSize_then_allLinesInOrder() {
+    LineRope rope = LineRope.empty();
+    for (int i = 0; i < 100; i++) {
+      LineRope other = LineRope.empty();
+      for (int j = 0; j < i; j++) {
+        other = other.add(Line.ofString(i + "-" + j));
+      }
+      rope = i % 2 == 0 ? rope.concat(other) : other.concat(rope);
+    }
+
+    final List<String> lines = new ArrayList<>();
+    rope.forEach(line -> lines.add(line.asString()));
+    final List<String> iteratedLines = new ArrayList<>();
+    rope.iterator().forEachRemaining(line -> iteratedLines.add(line.asString()));
+
+    assertThat(rope.size()).isEqualTo(4950);
+    assertThat(lines).isEqualTo(iteratedLines);
+    assertThat(lines.get(0)).isEqualTo("99-0");
+    assertThat(lines.get(lines.size() - 1)).isEqualTo("98-97");
+    assertThat(rope.height() <= 2 * log2(4950)).isTrue();
+  }
+
+  @Test
+  void take_when_called_then_onlyLeadingLinesRemainAndOriginalUnchanged() {
+    LineRope rope = LineRope.empty();
+    for (int i = 0; i < 1_000; i++) {
+      rope = rope.add(Line.ofString("" + i));
+    }
+
+    final LineRope taken = rope.take(555);
+
+    assertThat(taken.size()).isEqualTo(555);
+    assertThat(taken.last().asString()).isEqualTo("554");
+    assertThat(rope.size()).isEqualTo(1_000);
+    assertThat(rope.dropLast(1).last().asString()).isEqualTo("998");
+  }
+
+  @Test
+  void drop_when_called_then_onlyTrailingLinesRemainAndOriginalUnchanged() {
+    LineRope rope = LineRope.empty();
+    for (int i = 0; i < 1_000; i++) {
+      rope = rope.add(Line.ofString("" + i));
+    }
+
+    final LineRope dropped = rope.drop(555);
+
+    assertThat(dropped.size()).isEqualTo(445);
+    assertThat(dropped.get(0).asString()).isEqualTo("555");
+    assertThat(dropped.last().asString()).isEqualTo("999");
+    assertThat(rope.size()).isEqualTo(1_000);
+    assertThat(rope.drop(1_000).isEmpty()).isTrue();
+  }
+
+  @Test
+  void withLast_when_called_then_onlyLastLineReplaced() {
+    final LineRope rope = LineRope.single(Line.ofString("first")).add(Line.ofString("second"));
+
+    final LineRope replaced = rope.withLast(Line.ofString("replaced"));
+
+    assertThat(replaced.get(0).asString()).isEqualTo("first");
+    assertThat(replaced.last().asString()).isEqualTo("replaced");
+    assertThat(rope.last().asString()).isEqualTo("second");
+  }
+
+  @Test
+  void indent_when_nestedIndentedRopesConcatenated_then_linesIndentedAndBalanced() {
+    final Indentation indentation = Indentation.forSpacesPerTab(2);
+    LineRope rope = LineRope.empty();
+    for (int i = 0; i < 200; i++) {
+      rope = rope.add(Line.ofString("line " + i)).indent(1, indentation);
+    }
+    rope = rope.concat(LineRope.single(Line.ofString("last"))).take(150);
+
+    final List<String> lines = new ArrayList<>();
+    rope.forEach(line -> lines.add(line.asString()));
+    final List<String> iteratedLines = new ArrayList<>();
+    rope.iterator().forEachRemaining(line -> iteratedLines.add(line.asString()));
+
+    assertThat(rope.size()).isEqualTo(150);
+    assertThat(lines).isEqualTo(iteratedLines);
+    assertThat(lines.get(0)).isEqualTo(indentation.indent(200) + "line 0");
+    assertThat(rope.get(149).asString()).isEqualTo(indentation.indent(51) + "line 149");
+    assertThat(rope.height() <= 2 * log2(150)).isTrue();
+  }
+
+  private static int log2(int n) {
+    return 32 - Integer.numberOfLeadingZeros(n);
+  }
+}
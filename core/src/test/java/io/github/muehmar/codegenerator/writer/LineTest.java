@@ -32,4 +32,42 @@ class LineTest {
 
     assertThat(line.removeTrailingBlankFragments().asString()).isEqualTo(" Hello World!");
   }
+
+  @Test
+  void indent_when_calledWithDifferentIndentations_then_outerIndentationFirst() {
+    final Line line =
+        Line.ofString("Hello")
+            .indent(1, Indentation.forSpacesPerTab(4))
+            .indent(2, Indentation.forSpacesPerTab(1));
+
+    assertThat(line.asString()).isEqualTo("      Hello");
+  }
+
+  @Test
+  void indent_when_emptyLine_then_nonEmptyButRenderedWithoutIndentation() {
+    final Line line = Line.empty().indent(1, Indentation.forSpacesPerTab(2));
+
+    assertThat(line.isEmpty()).isFalse();
+    assertThat(line.removeTrailingBlankFragments().asString()).isEqualTo("");
+  }
+
+  @Test
+  void append_when_calledTwiceOnSameLine_then_linesIndependent() {
+    final Line hello = Line.ofString("Hello");
+
+    final Line helloWorld = hello.append(" World!");
+    final Line helloThere = hello.append(" there!");
+
+    assertThat(hello.asString()).isEqualTo("Hello");
+    assertThat(helloWorld.asString()).isEqualTo("Hello World!");
+    assertThat(helloThere.asString()).isEqualTo("Hello there!");
+    assertThat(helloWorld.append("?").asString()).isEqualTo("Hello World!?");
+  }
+
+  @Test
+  void prepend_when_indentedLine_then_fragmentInFrontOfIndentation() {
+    final Line line = Line.ofString("World!").indent(1, Indentation.forSpacesPerTab(2));
+
+    assertThat(line.prepend("Hello").asString()).isEqualTo("Hello  World!");
+  }
 }
@@ -0,0 +1,56 @@
+package io.github.muehmar.codegenerator.writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.bluecare.commons.data.PList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class RefSetTest {
+  @Test
+  void add_when_duplicateRefs_then_storedOnceAndSorted() {
+    final RefSet refs =
+        RefSet.empty(Comparator.naturalOrder())
+            .add("java.util.Optional")
+            .add("java.util.List")
+            .add("java.util.Optional");
+
+    assertThat(refs.size()).isEqualTo(2);
+    assertThat(refs.toPList()).isEqualTo(PList.of("java.util.List", "java.util.Optional"));
+    assertThat(refs.add("java.util.List")).isSameAs(refs);
+  }
+
+  @Test
+  void union_when_randomSets_then_sameAsTreeSet() {
+    final Random random = new Random(42);
+    RefSet union = RefSet.empty(Comparator.naturalOrder());
+    final TreeSet<String> expected = new TreeSet<>();
+    for (int i = 0; i < 50; i++) {
+      final int count = random.nextInt(100);
+      RefSet set = union.emptySet();
+      for (int j = 0; j < count; j++) {
+        final String ref = "io.github.Ref" + random.nextInt(500);
+        set = set.add(ref);
+        expected.add(ref);
+      }
+      union = i % 2 == 0 ? union.union(set) : set.union(union);
+    }
+
+    final List<String> refs = new ArrayList<>();
+    union.forEach(refs::add);
+    assertThat(refs).isEqualTo(new ArrayList<>(expected));
+    assertThat(union.size()).isEqualTo(expected.size());
+  }
+
+  @Test
+  void union_when_differentComparators_then_orderedByComparatorOfFirstSet() {
+    final RefSet reversed = RefSet.empty(Comparator.<String>reverseOrder()).add("a").add("c");
+    final RefSet natural = RefSet.empty(Comparator.<String>naturalOrder()).add("b").add("a");
+
+    assertThat(reversed.union(natural).toPList()).isEqualTo(PList.of("c", "b", "a"));
+  }
+}
@@ -0,0 +1,173 @@
+package io.github.muehmar.codegenerator.writer;
+
+import static io.github.muehmar.codegenerator.writer.Writer.javaWriter;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.jupiter.api.Test;
+
+class StreamingWriterTest {
+  @Test
+  void close_when_refsPrinted_then_refsBackPatchedAtPosition() {
+    final StringWriter out = new StringWriter();
+
+    StreamingWriter.javaWriter(out)
+        .println("package io.github.muehmar;")
+        .println()
+        .printRefs()
+        .println()
+        .println("public class Test {")
+        .ref("java.util.Optional")
+        .tab(1)
+        .println("private String name;")
+        .ref("java.util.List")
+        .ref("java.lang.String")
+        .ref("java.util.Optional")
+        .println("}")
+        .close();
+
+    assertThat(out.toString())
+        .isEqualTo(
+            "package io.github.muehmar;\n"
+                + "\n"
+                + "import java.util.List;\n"
+                + "import java.util.Optional;\n"
+                + "\n"
+                + "public class Test {\n"
+                + "  private String name;\n"
+                + "}");
+  }
+
+  @Test
+  void close_when_noRefs_then_blankLineAfterRefsPositionDropped() {
+    final StringWriter out = new StringWriter();
+
+    StreamingWriter.javaWriter(out)
+        .println("Hello")
+        .println()
+        .printRefs()
+        .println()
+        .println("World")
+        .close();
+
+    assertThat(out.toString()).isEqualTo("Hello\n\nWorld");
+  }
+
+  @Test
+  void close_when_fileChannelAsSink_then_refsPatchedInPlace() throws IOException {
+    final Path file = Files.createTempFile("streaming-writer-test", ".java");
+    try {
+      final FileChannel channel =
+          FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+      final StreamingWriter streamingWriter =
+          StreamingWriter.javaWriter(channel).printRefs().println();
+      Writer writer = javaWriter().printRefs().println();
+      for (int i = 0; i < 5_000; i++) {
+        streamingWriter.println("Line number %d", i).ref("io.github.Ref" + (i % 10));
+        writer = writer.println("Line number %d", i).ref("io.github.Ref" + (i % 10));
+      }
+      streamingWriter.close();
+
+      assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo(writer.asString());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void append_when_writersAppended_then_sameOutputAsWriter() {
+    final Writer writerA = javaWriter().println("Something of writer A").ref("Writer A ref");
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    StreamingWriter.javaWriter(out)
+        .println("First line of main writer")
+        .printRefs()
+        .append(2, writerA)
+        .println("Line after writer A")
+        .ref("Main writer ref")
+        .close();
+
+    final String expected =
+        javaWriter()
+            .println("First line of main writer")
+            .printRefs()
+            .append(2, writerA)
+            .println("Line after writer A")
+            .ref("Main writer ref")
+            .asString();
+    assertThat(new String(out.toByteArray(), UTF_8)).isEqualTo(expected);
+  }
+
+  @Test
+  void append_when_appendedWriterContainsRefsPosition_then_refsPrintedWithinAppendedContent() {
+    final Writer inner =
+        javaWriter()
+            .println("package a;")
+            .println()
+            .printRefs()
+            .println("class B {}")
+            .ref("java.util.List");
+    final StringWriter out = new StringWriter();
+
+    StreamingWriter.javaWriter(out).println("// header").println("// more").append(inner).close();
+
+    assertThat(out.toString())
+        .isEqualTo("// header\n// more\npackage a;\n\nimport java.util.List;\nclass B {}");
+    assertThat(javaWriter().println("// header").println("// more").append(inner).asString())
+        .isEqualTo("// header\n// more\nimport java.util.List;\npackage a;\n\nclass B {}");
+  }
+
+  @Test
+  void close_when_fileChannelAndUnpairedSurrogates_then_replacedLikeWriter() throws IOException {
+    final Path file = Files.createTempFile("streaming-writer-test", ".java");
+    try {
+      final FileChannel channel =
+          FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+      StreamingWriter.javaWriter(channel)
+          .println("high \uD83D")
+          .println("pair \uD83D\uDE00")
+          .print("end \uD83D")
+          .close();
+
+      final String expected =
+          javaWriter()
+              .println("high \uD83D")
+              .println("pair \uD83D\uDE00")
+              .print("end \uD83D")
+              .asString();
+      assertThat(Files.readAllBytes(file)).isEqualTo(expected.getBytes(UTF_8));
+      assertThat(new String(Files.readAllBytes(file), UTF_8))
+          .isEqualTo("high ?\npair \uD83D\uDE00\nend ?");
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void resetToLastNonEmptyLine_when_called_then_followingPrintStatementsAddToLastNonEmptyLine() {
+    final StringWriter out = new StringWriter();
+
+    StreamingWriter.javaWriter(out)
+        .println("Hello")
+        .println()
+        .println("World")
+        .println()
+        .resetToLastNotEmptyLine()
+        .println("!")
+        .printSingleBlankLine()
+        .printSingleBlankLine()
+        .println("HELLO")
+        .close();
+
+    assertThat(out.toString()).isEqualTo("Hello\n\nWorld!\n\nHELLO");
+  }
+}
@@ -0,0 +1,66 @@
+package io.github.muehmar.codegenerator.writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigInteger;
+import java.util.MissingFormatArgumentException;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class TemplateTest {
+  @ParameterizedTest
+  @MethodSource("formatsAndArguments")
+  void format_when_called_then_sameResultAsStringFormat(String format, Object[] args) {
+    assertThat(Template.of(format).format(args)).isEqualTo(String.format(format, args));
+  }
+
+  private static Stream<Arguments> formatsAndArguments() {
+    return Stream.of(
+        arguments("Hello World"),
+        arguments(""),
+        arguments("%s", "Hello"),
+        arguments("%s %s", "String", "name"),
+        arguments("public %s(%s) {", "Customer", "String name"),
+        arguments("%s", (Object) null),
+        arguments("Line number %d", 42),
+        arguments("%d %d %d %d", -5L, (short) 7, (byte) -3, BigInteger.TEN.pow(30)),
+        arguments("100%% %s%n", "done"),
+        arguments("%s", 42.5),
+        arguments("%s and more", "only first", "unused"),
+        arguments("%5d|%-8s|%x", 42, "left", 255),
+        arguments("%2$s %1$s", "World", "Hello"),
+        arguments("%.2f", 1.2345));
+  }
+
+  private static Arguments arguments(String format, Object... args) {
+    return Arguments.of(format, args);
+  }
+
+  @Test
+  void format_when_tooFewArguments_then_sameExceptionAsStringFormat() {
+    final Template template = Template.of("%s %s");
+
+    assertThatThrownBy(() -> template.format("only one"))
+        .isInstanceOf(MissingFormatArgumentException.class);
+  }
+
+  @Test
+  void print_when_templateUsed_then_sameOutputAsFormatString() {
+    final Template template = Template.of("private final %s %s;");
+
+    final Writer writer =
+        Writer.javaWriter()
+            .print(template, "String", "name")
+            .println()
+            .println(template, "int", "age")
+            .print('%')
+            .println(-12);
+
+    assertThat(writer.asString())
+        .isEqualTo("private final String name;\nprivate final int age;\n%-12");
+  }
+}
@@ -0,0 +1,60 @@
+package io.github.muehmar.codegenerator.writer;
+
+import static io.github.muehmar.codegenerator.writer.Writer.javaWriter;
+import static io.github.muehmar.codegenerator.writer.WriterBuilder.javaWriterBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class WriterBuilderTest {
+  @Test
+  void println_when_manyLinesWithRefs_then_sameOutputAsWriter() {
+    final WriterBuilder builder = javaWriterBuilder().println("package io.github;").printRefs();
+    Writer writer = javaWriter().println("package io.github;").printRefs();
+    for (int i = 0; i < 1_000; i++) {
+      builder.tab(i % 3).println("Line %d", i).ref("io.github.Ref" + i % 7);
+      writer = writer.tab(i % 3).println("Line %d", i).ref("io.github.Ref" + i % 7);
+      if (i % 10 == 0) {
+        builder.println().println().printSingleBlankLine();
+        writer = writer.println().println().printSingleBlankLine();
+      }
+    }
+
+    assertThat(builder.asString()).isEqualTo(writer.asString());
+  }
+
+  @Test
+  void rollback_when_called_then_changesSinceSnapshotDiscarded() {
+    final WriterBuilder builder = javaWriterBuilder().println("Hello");
+    final WriterBuilder.Snapshot snapshot = builder.snapshot();
+
+    builder.printRefs().ref("java.util.List").println("World").tab(2).print("!");
+    builder.rollback(snapshot);
+    builder.println("Universe");
+
+    assertThat(builder.asString()).isEqualTo("Hello\nUniverse");
+  }
+
+  @Test
+  void toWriter_when_builderModifiedAfterwards_then_writerUnchanged() {
+    final WriterBuilder builder = javaWriterBuilder().println("Hello");
+    final Writer writer = builder.toWriter();
+
+    builder.println("World");
+
+    assertThat(writer.asString()).isEqualTo("Hello");
+    assertThat(builder.asString()).isEqualTo("Hello\nWorld");
+  }
+
+  @Test
+  void append_when_writerAppendedWithTabs_then_sameOutputAsWriter() {
+    final Writer other = javaWriter().println("Other").printRefs().ref("java.util.Optional");
+
+    final WriterBuilder builder =
+        javaWriterBuilder().print("First").append(2, other).resetToLastNotEmptyLine().print("!");
+    final Writer writer =
+        javaWriter().print("First").append(2, other).resetToLastNotEmptyLine().print("!");
+
+    assertThat(builder.asString()).isEqualTo(writer.asString());
+  }
+}
@@ -1,8 +1,19 @@
 package io.github.muehmar.codegenerator.writer;
 
 import static io.github.muehmar.codegenerator.writer.Writer.javaWriter;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
 import org.junit.jupiter.api.Test;
 
 class WriterTest {
@@ -212,4 +223,136 @@ class WriterTest {
 
     assertThat(output).isEqualTo("Hello\n\nWorld!");
   }
+
+  @Test
+  void resetToLastNonEmptyLine_when_appendedWriterEndsWithEmptyLines_then_removedAcrossWriters() {
+    final Writer blankLines = javaWriter().println().println();
+
+    final String output =
+        javaWriter()
+            .println("Hello")
+            .println()
+            .append(blankLines)
+            .printSingleBlankLine()
+            .resetToLastNotEmptyLine()
+            .println("!")
+            .asString();
+
+    assertThat(output).isEqualTo("Hello!");
+  }
+
+  @Test
+  void writeTo_when_nonAsciiCharacters_then_sameBytesAsUtf8EncodedString() throws IOException {
+    final Writer writer =
+        javaWriter()
+            .printRefs()
+            .println("Gr\u00fc\u00dfe \u20ac")
+            .print("\uD83D")
+            .println("\uDE00 smiley")
+            .println("lone \uD83D surrogate")
+            .ref("java.util.Optional");
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    writer.writeTo(Channels.newChannel(out));
+
+    assertThat(out.toByteArray()).isEqualTo(writer.asString().getBytes(UTF_8));
+  }
+
+  @Test
+  void writeTo_when_pathAndContentLargerThanBuffers_then_fileContainsContent() throws IOException {
+    Writer writer = javaWriter().printRefs().println();
+    for (int i = 0; i < 20_000; i++) {
+      writer = writer.tab(1).println("Line number %d with \u00e4", i).ref("io.github.Ref" + i % 10);
+    }
+    final Path file = Files.createTempFile("writer-test", ".java");
+    try {
+      Files.write(file, "Previous longer content".getBytes(UTF_8));
+
+      writer.writeTo(file);
+
+      assertThat(new String(Files.readAllBytes(file), UTF_8)).isEqualTo(writer.asString());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void concatAll_when_multipleWriters_then_sameOutputAsAppendingOneAfterAnother() {
+    final Writer writerA = javaWriter().println("package io.github;").println().printRefs();
+    final Writer writerB = javaWriter().print("class A {").ref("java.util.List").tab(1);
+    final Writer writerC = javaWriter().println().println().tab(1).println("}").ref("a.B");
+
+    final Writer concatenated = Writer.concatAll(Arrays.asList(writerA, writerB, writerC));
+
+    final Writer appended = writerA.append(writerB).append(writerC);
+    assertThat(concatenated.asString()).isEqualTo(appended.asString());
+    assertThat(concatenated.getRefs()).isEqualTo(appended.getRefs());
+    assertThat(concatenated.println("Next").asString())
+        .isEqualTo(appended.println("Next").asString());
+  }
+
+  @Test
+  void concatAll_when_noWriters_then_throws() {
+    assertThatThrownBy(() -> Writer.concatAll(Collections.emptyList()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void append_when_deeplyNestedWriters_then_everyLevelIndented() {
+    Writer writer = javaWriter().println("Level 0");
+    for (int level = 1; level <= 50; level++) {
+      writer = javaWriter().println("Level %d", level).append(1, writer);
+    }
+
+    final String[] lines = writer.asString().split("\n");
+
+    assertThat(lines.length).isEqualTo(51);
+    assertThat(lines[0]).isEqualTo("Level 50");
+    assertThat(lines[50]).isEqualTo(new String(new char[100]).replace("\0", " ") + "Level 0");
+  }
+
+  @Test
+  void continueWith_when_fragmentPrintsAndAppends_then_sameOutputAsCallingMethodsOnWriter() {
+    final Writer writer = javaWriter().println("package a;").printRefs().tab(1).print("List.of(");
+    final UnaryOperator<Writer> element =
+        w -> w.print("a").ref("a.B").append(2, javaWriter().println("inner")).tab(1).print("b");
+
+    final Writer start = writer.startFragment();
+    final Optional<Writer> merged = writer.continueWith(start, element.apply(start));
+
+    assertThat(merged).isPresent();
+    assertThat(merged.get().print(")").asString())
+        .isEqualTo(element.apply(writer).print(")").asString());
+  }
+
+  @Test
+  void continueWith_when_fragmentStartsWithAppendOnCurrentLine_then_appendedOnNewLine() {
+    final Writer writer = javaWriter().print("first");
+    final UnaryOperator<Writer> element = w -> w.append(javaWriter().println("second"));
+
+    final Writer start = writer.startFragment();
+    final Optional<Writer> merged = writer.continueWith(start, element.apply(start));
+
+    assertThat(merged).isPresent();
+    assertThat(merged.get().asString()).isEqualTo("first\nsecond");
+  }
+
+  @Test
+  void continueWith_when_fragmentResetsContentBeforeStart_then_empty() {
+    final Writer writer = javaWriter().println("first").println();
+    final Writer start = writer.startFragment();
+
+    final Writer fragment = start.resetToLastNotEmptyLine().print(";");
+
+    assertThat(writer.continueWith(start, fragment)).isEmpty();
+    assertThat(writer.resetToLastNotEmptyLine().print(";").asString()).isEqualTo("first;");
+  }
+
+  @Test
+  void continueWith_when_writerInOtherStateThanStart_then_empty() {
+    final Writer writer = javaWriter().println("first");
+    final Writer start = writer.tab(1).startFragment();
+
+    assertThat(writer.continueWith(start, start.print("second"))).isEmpty();
+  }
 }
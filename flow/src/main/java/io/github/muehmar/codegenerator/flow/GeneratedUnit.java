@@ -0,0 +1,23 @@
+package io.github.muehmar.codegenerator.flow;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/** Content generated for a single input of a {@link GenerationProcessor}. */
+public record GeneratedUnit(String name, Writer writer) {
+
+  /** Returns the content UTF-8 encoded, see {@link Writer#writeTo(WritableByteChannel)}. */
+  public byte[] toUtf8Bytes() {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(writer.length());
+    try {
+      writer.writeTo(Channels.newChannel(out));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+}
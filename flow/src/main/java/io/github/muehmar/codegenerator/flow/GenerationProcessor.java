@@ -0,0 +1,232 @@
+package io.github.muehmar.codegenerator.flow;
+
+import io.github.muehmar.codegenerator.Generator;
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@link Flow.Processor} generating the content for every input with a {@link Generator}. At most
+ * {@code concurrency} inputs are requested from the upstream publisher and generated at the same
+ * time, a further input is requested only after the content of an input was accepted downstream.
+ * The downstream subscribers receive the {@link GeneratedUnit}s in the order the generation
+ * finished, which is the order of the inputs for a concurrency of one.
+ *
+ * <p>The generated units are offered to the subscribers with {@link SubmissionPublisher#submit},
+ * i.e. a generating thread blocks while the buffer of a subscriber is full and thus propagates the
+ * backpressure to the upstream publisher. Units generated while there are no subscribers are
+ * dropped, the subscribers should therefore subscribe before this processor subscribes upstream.
+ *
+ * <p>A failing generator cancels the upstream subscription and completes the subscribers
+ * exceptionally, this includes errors like a {@link StackOverflowError}. An error of the upstream
+ * publisher is passed to the subscribers after the inputs in flight are generated.
+ *
+ * <p>The generating threads do not call the upstream subscription directly. The requested inputs
+ * are accumulated and signalled together with a cancellation by one thread at a time, i.e. the
+ * calls of the subscription are serial as required by the Reactive Streams specification.
+ */
+public final class GenerationProcessor<A, B> extends SubmissionPublisher<GeneratedUnit>
+    implements Flow.Processor<A, GeneratedUnit> {
+  private final Generator<A, B> generator;
+  private final B settings;
+  private final Function<A, String> createName;
+  private final Supplier<Writer> createWriter;
+  private final Executor executor;
+  private final int concurrency;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicBoolean terminated = new AtomicBoolean();
+
+  /** Number of inputs to request upstream which are not yet signalled. */
+  private final AtomicLong demand = new AtomicLong();
+
+  /** Number of signals to the upstream subscription pending, non-zero while one is in progress. */
+  private final AtomicInteger signalling = new AtomicInteger();
+
+  private volatile boolean cancelled;
+
+  /** Whether the subscription is cancelled, accessed only while signalling. */
+  private boolean cancelSignalled;
+
+  private volatile Flow.Subscription subscription;
+  private volatile boolean upstreamDone;
+  private volatile Throwable upstreamError;
+
+  private GenerationProcessor(
+      Generator<A, B> generator,
+      B settings,
+      Function<A, String> createName,
+      Supplier<Writer> createWriter,
+      Executor executor,
+      int concurrency,
+      int bufferCapacity) {
+    super(executor, bufferCapacity);
+    this.generator = generator;
+    this.settings = settings;
+    this.createName = createName;
+    this.createWriter = createWriter;
+    this.executor = executor;
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * Creates a processor generating into a {@link Writer#javaWriter()} with a concurrency of the
+   * number of available processors on the common {@link ForkJoinPool}. The name of a unit is
+   * created with the given function.
+   */
+  public static <A, B> GenerationProcessor<A, B> create(
+      Generator<A, B> generator, B settings, Function<A, String> createName) {
+    return create(
+        generator,
+        settings,
+        createName,
+        Writer::javaWriter,
+        ForkJoinPool.commonPool(),
+        Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a processor generating into writers created by {@code createWriter} with the given
+   * concurrency. The content is generated and delivered to the subscribers with the given
+   * executor.
+   *
+   * @throws IllegalArgumentException if the concurrency is not positive
+   */
+  public static <A, B> GenerationProcessor<A, B> create(
+      Generator<A, B> generator,
+      B settings,
+      Function<A, String> createName,
+      Supplier<Writer> createWriter,
+      Executor executor,
+      int concurrency) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+    }
+    return new GenerationProcessor<>(
+        generator,
+        settings,
+        createName,
+        createWriter,
+        executor,
+        concurrency,
+        Flow.defaultBufferSize());
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (this.subscription != null) {
+      subscription.cancel();
+      return;
+    }
+    this.subscription = subscription;
+    request(concurrency);
+  }
+
+  @Override
+  public void onNext(A item) {
+    inFlight.incrementAndGet();
+    try {
+      executor.execute(() -> generate(item));
+    } catch (RejectedExecutionException e) {
+      fail(e);
+    }
+  }
+
+  private void generate(A item) {
+    final GeneratedUnit unit;
+    try {
+      final Writer writer = generator.generate(item, settings, createWriter.get());
+      unit = new GeneratedUnit(createName.apply(item), writer);
+    } catch (Throwable e) {
+      fail(e);
+      return;
+    }
+    try {
+      submit(unit);
+    } catch (IllegalStateException e) {
+      // closed because another input failed
+      return;
+    }
+    if (inFlight.decrementAndGet() == 0 && upstreamDone) {
+      finish();
+    } else if (!upstreamDone) {
+      request(1);
+    }
+  }
+
+  private void fail(Throwable e) {
+    if (terminated.compareAndSet(false, true)) {
+      cancelled = true;
+      signalUpstream();
+      closeExceptionally(e);
+    }
+  }
+
+  private void request(long n) {
+    demand.addAndGet(n);
+    signalUpstream();
+  }
+
+  /**
+   * Signals the accumulated demand or the cancellation to the upstream subscription. In case
+   * another thread is already signalling, it signals again on behalf of the calling thread before
+   * it returns.
+   */
+  private void signalUpstream() {
+    if (signalling.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      if (cancelled) {
+        demand.set(0);
+        if (!cancelSignalled) {
+          cancelSignalled = true;
+          subscription.cancel();
+        }
+      } else {
+        final long n = demand.getAndSet(0);
+        if (n > 0) {
+          subscription.request(n);
+        }
+      }
+      missed = signalling.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    upstreamError = throwable;
+    upstreamDone = true;
+    if (inFlight.get() == 0) {
+      finish();
+    }
+  }
+
+  @Override
+  public void onComplete() {
+    upstreamDone = true;
+    if (inFlight.get() == 0) {
+      finish();
+    }
+  }
+
+  private void finish() {
+    if (terminated.compareAndSet(false, true)) {
+      final Throwable error = upstreamError;
+      if (error != null) {
+        closeExceptionally(error);
+      } else {
+        close();
+      }
+    }
+  }
+}
@@ -0,0 +1,211 @@
+package io.github.muehmar.codegenerator.flow;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.muehmar.codegenerator.Generator;
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class GenerationProcessorTest {
+  private static final Generator<Integer, Void> CLASS_GEN =
+      (i, settings, writer) -> writer.println("class A%d {}", i);
+
+  @Test
+  void onNext_when_publisherCompletes_then_allUnitsGeneratedAndSubscriberCompleted()
+      throws Exception {
+    final GenerationProcessor<Integer, Void> processor =
+        GenerationProcessor.create(
+            CLASS_GEN, null, i -> "A" + i, Writer::javaWriter, ForkJoinPool.commonPool(), 4);
+    final CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+    processor.subscribe(subscriber);
+
+    try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+      publisher.subscribe(processor);
+      for (int i = 0; i < 100; i++) {
+        publisher.submit(i);
+      }
+    }
+
+    subscriber.completion.get(10, TimeUnit.SECONDS);
+    assertThat(subscriber.units).hasSize(100);
+    final GeneratedUnit unit =
+        subscriber.units.stream().filter(u -> u.name().equals("A42")).findFirst().orElseThrow();
+    assertThat(new String(unit.toUtf8Bytes(), UTF_8)).isEqualTo("class A42 {}");
+  }
+
+  @Test
+  void onNext_when_concurrencyOne_then_unitsInOrderOfInputs() throws Exception {
+    final GenerationProcessor<Integer, Void> processor =
+        GenerationProcessor.create(
+            CLASS_GEN, null, i -> "A" + i, Writer::javaWriter, ForkJoinPool.commonPool(), 1);
+    final CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+    processor.subscribe(subscriber);
+
+    try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+      publisher.subscribe(processor);
+      for (int i = 0; i < 20; i++) {
+        publisher.submit(i);
+      }
+    }
+
+    subscriber.completion.get(10, TimeUnit.SECONDS);
+    assertThat(subscriber.units.stream().map(GeneratedUnit::name))
+        .containsExactlyElementsOf(
+            IntStream.range(0, 20).mapToObj(i -> "A" + i).collect(Collectors.toList()));
+  }
+
+  @Test
+  void onNext_when_generatorFails_then_subscriberCompletedExceptionally() throws Exception {
+    final Generator<Integer, Void> failingGen =
+        (i, settings, writer) -> {
+          throw new IllegalStateException("Failed " + i);
+        };
+    final GenerationProcessor<Integer, Void> processor =
+        GenerationProcessor.create(failingGen, null, i -> "A" + i);
+    final CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+    processor.subscribe(subscriber);
+
+    try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+      publisher.subscribe(processor);
+      publisher.submit(1);
+    }
+
+    assertThat(subscriber.completion)
+        .failsWithin(10, TimeUnit.SECONDS)
+        .withThrowableThat()
+        .withMessageContaining("Failed 1");
+  }
+
+  @Test
+  void onNext_when_generatorThrowsError_then_subscriberCompletedExceptionally() throws Exception {
+    final Generator<Integer, Void> failingGen =
+        (i, settings, writer) -> {
+          throw new StackOverflowError("Too deep " + i);
+        };
+    final GenerationProcessor<Integer, Void> processor =
+        GenerationProcessor.create(failingGen, null, i -> "A" + i);
+    final CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+    processor.subscribe(subscriber);
+
+    try (SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>()) {
+      publisher.subscribe(processor);
+      publisher.submit(1);
+    }
+
+    assertThat(subscriber.completion)
+        .failsWithin(10, TimeUnit.SECONDS)
+        .withThrowableThat()
+        .withMessageContaining("Too deep 1");
+  }
+
+  @Test
+  void onNext_when_subscriberRequestsNothing_then_atMostConcurrencyInputsRequested()
+      throws Exception {
+    final AtomicInteger requested = new AtomicInteger();
+    final GenerationProcessor<Integer, Void> processor =
+        GenerationProcessor.create(
+            CLASS_GEN, null, i -> "A" + i, Writer::javaWriter, ForkJoinPool.commonPool(), 2);
+    processor.subscribe(new CollectingSubscriber(0));
+
+    processor.onSubscribe(
+        new Flow.Subscription() {
+          @Override
+          public void request(long n) {
+            requested.addAndGet((int) n);
+          }
+
+          @Override
+          public void cancel() {}
+        });
+
+    assertThat(requested.get()).isEqualTo(2);
+  }
+
+  @Test
+  void onNext_when_subscriberStalls_then_noFurtherInputsRequested() throws Exception {
+    final AtomicLong requested = new AtomicLong();
+    final ExecutorService executor = Executors.newCachedThreadPool();
+    final CollectingSubscriber subscriber = new CollectingSubscriber(1);
+    final GenerationProcessor<Integer, Void> processor =
+        GenerationProcessor.create(CLASS_GEN, null, i -> "A" + i, Writer::javaWriter, executor, 2);
+    processor.subscribe(subscriber);
+    processor.onSubscribe(
+        new Flow.Subscription() {
+          @Override
+          public void request(long n) {
+            requested.addAndGet(n);
+          }
+
+          @Override
+          public void cancel() {}
+        });
+
+    try {
+      int sent = 0;
+      long lastChange = System.nanoTime();
+      while (System.nanoTime() - lastChange < TimeUnit.MILLISECONDS.toNanos(500)) {
+        if (sent < requested.get()) {
+          processor.onNext(sent++);
+          lastChange = System.nanoTime();
+        } else {
+          Thread.sleep(10);
+        }
+      }
+
+      assertThat(requested.get()).isEqualTo(sent);
+      assertThat(requested.get()).isLessThanOrEqualTo(2 + 1 + processor.getMaxBufferCapacity());
+      assertThat(subscriber.units).hasSize(1);
+    } finally {
+      subscriber.subscription.cancel();
+      executor.shutdownNow();
+    }
+  }
+
+  private static final class CollectingSubscriber implements Flow.Subscriber<GeneratedUnit> {
+    private final long initialRequest;
+    private final List<GeneratedUnit> units = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private volatile Flow.Subscription subscription;
+
+    private CollectingSubscriber(long initialRequest) {
+      this.initialRequest = initialRequest;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      if (initialRequest > 0) {
+        subscription.request(initialRequest);
+      }
+    }
+
+    @Override
+    public void onNext(GeneratedUnit item) {
+      units.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      completion.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      completion.complete(null);
+    }
+  }
+}
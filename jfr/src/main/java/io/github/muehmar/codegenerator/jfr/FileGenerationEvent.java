@@ -0,0 +1,32 @@
+package io.github.muehmar.codegenerator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(FileGenerationEvent.NAME)
+@Label("File Generation")
+@Description("File written by a GenerationBatch, GeneratedSourceSet or SourceArchive")
+@Category(JfrGenerationMetrics.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+final class FileGenerationEvent extends jdk.jfr.Event {
+  static final String NAME = "io.github.muehmar.codegenerator.FileGeneration";
+
+  @Label("File")
+  String file;
+
+  @Label("Lines")
+  int lines;
+
+  @Label("Size")
+  @DataAmount
+  long bytes;
+
+  @Label("Refs")
+  int refs;
+}
@@ -0,0 +1,24 @@
+package io.github.muehmar.codegenerator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(ImportResolutionEvent.NAME)
+@Label("Import Resolution")
+@Description("Refs of a Writer filtered and formatted with its RefWriter")
+@Category(JfrGenerationMetrics.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+final class ImportResolutionEvent extends jdk.jfr.Event {
+  static final String NAME = "io.github.muehmar.codegenerator.ImportResolution";
+
+  @Label("Refs")
+  int refs;
+
+  @Label("Imports")
+  int imports;
+}
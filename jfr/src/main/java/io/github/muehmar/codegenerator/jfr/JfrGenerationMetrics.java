@@ -0,0 +1,91 @@
+package io.github.muehmar.codegenerator.jfr;
+
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics;
+import jdk.jfr.Event;
+
+/**
+ * {@link GenerationMetrics} emitting Java Flight Recorder events for generated files, named
+ * generators, rendered writers and resolved imports. The events are disabled by default and are
+ * only created in case they are enabled in an active recording, e.g. with the setting {@code
+ * <event name="io.github.muehmar.codegenerator.WriterRender"><setting
+ * name="enabled">true</setting></event>} in a custom {@code .jfc} file or with {@link
+ * jdk.jfr.Recording#enable(String)}.
+ *
+ * <p>An event begins when the operation is announced with {@link #begin(Operation)} and is
+ * committed when the operation is reported, i.e. the start time and duration of the event are the
+ * ones of the operation and nested operations are shown within each other on the thread.
+ */
+public final class JfrGenerationMetrics implements GenerationMetrics {
+  static final String CATEGORY = "Code Generator";
+
+  private JfrGenerationMetrics() {}
+
+  public static JfrGenerationMetrics create() {
+    return new JfrGenerationMetrics();
+  }
+
+  /** Installs this instance, see {@link GenerationMetrics#install(GenerationMetrics)}. */
+  public JfrGenerationMetrics install() {
+    GenerationMetrics.install(this);
+    return this;
+  }
+
+  @Override
+  public Object begin(Operation operation) {
+    final Event event =
+        switch (operation) {
+          case RESOLVE_REFS -> new ImportResolutionEvent();
+          case RENDER -> new WriterRenderEvent();
+          case GENERATE_FILE -> new FileGenerationEvent();
+          case GENERATE -> new NamedGeneratorEvent();
+        };
+    if (!event.isEnabled()) {
+      return null;
+    }
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public void refsResolved(Object context, int refs, int formattedRefs, long nanos) {
+    if (context instanceof ImportResolutionEvent event) {
+      event.refs = refs;
+      event.imports = formattedRefs;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void rendered(Object context, int lines, long characters, int refs, long nanos) {
+    if (context instanceof WriterRenderEvent event) {
+      event.lines = lines;
+      event.characters = characters;
+      event.refs = refs;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void fileGenerated(
+      Object context, String file, int lines, long bytes, int refs, long nanos) {
+    if (context instanceof FileGenerationEvent event) {
+      event.file = file;
+      event.lines = lines;
+      event.bytes = bytes;
+      event.refs = refs;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void generated(
+      Object context, String name, int lines, long characters, int refs, long nanos) {
+    if (context instanceof NamedGeneratorEvent event) {
+      event.name = name;
+      event.lines = lines;
+      event.characters = characters;
+      event.refs = refs;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package io.github.muehmar.codegenerator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(NamedGeneratorEvent.NAME)
+@Label("Named Generator")
+@Description("Execution of a generator created with Generator.named")
+@Category(JfrGenerationMetrics.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+final class NamedGeneratorEvent extends jdk.jfr.Event {
+  static final String NAME = "io.github.muehmar.codegenerator.NamedGenerator";
+
+  @Label("Name")
+  String name;
+
+  @Label("Lines")
+  int lines;
+
+  @Label("Characters")
+  long characters;
+
+  @Label("Refs")
+  int refs;
+}
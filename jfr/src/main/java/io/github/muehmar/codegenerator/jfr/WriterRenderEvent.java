@@ -0,0 +1,27 @@
+package io.github.muehmar.codegenerator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(WriterRenderEvent.NAME)
+@Label("Writer Render")
+@Description("Content of a Writer rendered to a string or a channel")
+@Category(JfrGenerationMetrics.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+final class WriterRenderEvent extends jdk.jfr.Event {
+  static final String NAME = "io.github.muehmar.codegenerator.WriterRender";
+
+  @Label("Lines")
+  int lines;
+
+  @Label("Characters")
+  long characters;
+
+  @Label("Refs")
+  int refs;
+}
@@ -0,0 +1,149 @@
+package io.github.muehmar.codegenerator.jfr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.muehmar.codegenerator.Generator;
+import io.github.muehmar.codegenerator.batch.GenerationBatch;
+import io.github.muehmar.codegenerator.batch.GenerationJob;
+import io.github.muehmar.codegenerator.metrics.GenerationMetrics;
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JfrGenerationMetricsTest {
+  private static final Generator<Void, Void> CLASS_GEN =
+      Generator.<Void, Void>constant("package a;")
+          .append(Writer::printRefs)
+          .append(Generator.<Void, Void>constant("class A {}").append(w -> w.ref("java.util.List")))
+          .named("class");
+
+  @TempDir Path tempDir;
+
+  @Test
+  void generate_when_eventsEnabled_then_eventsWithFieldsRecorded() throws Exception {
+    final List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable(NamedGeneratorEvent.NAME);
+      recording.enable(WriterRenderEvent.NAME);
+      recording.enable(ImportResolutionEvent.NAME);
+      recording.start();
+      JfrGenerationMetrics.create().install();
+      try {
+        CLASS_GEN.generate(null, null, Writer.javaWriter()).asString();
+      } finally {
+        GenerationMetrics.uninstall();
+      }
+      recording.stop();
+      events = readEvents(recording);
+    }
+
+    assertThat(names(events))
+        .containsExactly(
+            NamedGeneratorEvent.NAME, WriterRenderEvent.NAME, ImportResolutionEvent.NAME);
+    assertThat(events.get(0).getString("name")).isEqualTo("class");
+    assertThat(events.get(0).getInt("lines")).isEqualTo(2);
+    assertThat(events.get(0).getLong("characters"))
+        .isEqualTo((long) "package a;class A {}".length());
+    assertThat(events.get(0).getInt("refs")).isEqualTo(1);
+    assertThat(events.get(1).getInt("lines")).isEqualTo(3);
+    assertThat(events.get(1).getLong("characters"))
+        .isEqualTo((long) "package a;\nimport java.util.List;\nclass A {}".length());
+    assertThat(events.get(1).getInt("refs")).isEqualTo(1);
+    assertThat(events.get(2).getInt("refs")).isEqualTo(1);
+    assertThat(events.get(2).getInt("imports")).isEqualTo(1);
+  }
+
+  @Test
+  void asString_when_eventsEnabled_then_importResolutionWithinWriterRender() throws Exception {
+    final List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable(WriterRenderEvent.NAME);
+      recording.enable(ImportResolutionEvent.NAME);
+      recording.start();
+      JfrGenerationMetrics.create().install();
+      try {
+        CLASS_GEN.generate(null, null, Writer.javaWriter()).asString();
+      } finally {
+        GenerationMetrics.uninstall();
+      }
+      recording.stop();
+      events = readEvents(recording);
+    }
+
+    assertThat(names(events)).containsExactly(WriterRenderEvent.NAME, ImportResolutionEvent.NAME);
+    final RecordedEvent render = events.get(0);
+    final RecordedEvent resolution = events.get(1);
+    assertThat(render.getStartTime()).isBeforeOrEqualTo(resolution.getStartTime());
+    assertThat(render.getEndTime()).isAfterOrEqualTo(resolution.getEndTime());
+    assertThat(render.getDuration()).isGreaterThan(resolution.getDuration());
+    assertThat(render.getThread().getJavaThreadId())
+        .isEqualTo(resolution.getThread().getJavaThreadId());
+  }
+
+  @Test
+  void run_when_fileGenerationEnabled_then_eventPerFileRecorded() throws Exception {
+    final Path target = tempDir.resolve("A.java");
+    final List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable(FileGenerationEvent.NAME);
+      recording.start();
+      JfrGenerationMetrics.create().install();
+      try {
+        GenerationBatch.of(CLASS_GEN, null)
+            .withThreads(1)
+            .run(Stream.of(GenerationJob.of(null, target)));
+      } finally {
+        GenerationMetrics.uninstall();
+      }
+      recording.stop();
+      events = readEvents(recording);
+    }
+
+    assertThat(names(events)).containsExactly(FileGenerationEvent.NAME);
+    assertThat(events.get(0).getString("file")).isEqualTo(target.toString());
+    assertThat(events.get(0).getLong("bytes")).isEqualTo(Files.size(target));
+    assertThat(events.get(0).getInt("refs")).isEqualTo(1);
+  }
+
+  @Test
+  void generate_when_eventsNotEnabled_then_noEventsRecorded() throws Exception {
+    final List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.start();
+      JfrGenerationMetrics.create().install();
+      try {
+        CLASS_GEN.generate(null, null, Writer.javaWriter()).asString();
+      } finally {
+        GenerationMetrics.uninstall();
+      }
+      recording.stop();
+      events = readEvents(recording);
+    }
+
+    assertThat(names(events)).isEmpty();
+  }
+
+  private List<RecordedEvent> readEvents(Recording recording) throws Exception {
+    final Path file = tempDir.resolve("recording.jfr");
+    recording.dump(file);
+    return RecordingFile.readAllEvents(file).stream()
+        .filter(event -> event.getEventType().getName().startsWith("io.github.muehmar"))
+        .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+        .collect(Collectors.toList());
+  }
+
+  private static List<String> names(List<RecordedEvent> events) {
+    return events.stream()
+        .map(event -> event.getEventType().getName())
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,108 @@
+package io.github.muehmar.codegenerator.verify;
+
+import ch.bluecare.commons.data.PList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Verifies that generated sources compile with the {@link JavaCompiler} of the running JDK without
+ * any disk I/O. The content of the writers is passed directly to the compiler and the produced
+ * class files are discarded. All sources of a check are compiled in a single compilation task,
+ * i.e. the sources can refer to each other. Classes referenced by the sources are resolved with
+ * the classpath of the running application unless configured otherwise with the options.
+ *
+ * <p>The diagnostics of the compiler are mapped back to the keys of the {@link SourceUnit}s. A
+ * check is immutable and can be executed multiple times, also concurrently.
+ */
+public final class CompilationCheck {
+  /** Options used if not configured otherwise, annotation processing is disabled. */
+  public static final PList<String> DEFAULT_OPTIONS = PList.single("-proc:none");
+
+  private final JavaCompiler compiler;
+  private final PList<String> options;
+
+  private CompilationCheck(JavaCompiler compiler, PList<String> options) {
+    this.compiler = compiler;
+    this.options = options;
+  }
+
+  /**
+   * Creates a check using the system compiler with the {@link #DEFAULT_OPTIONS}.
+   *
+   * @throws IllegalStateException if the application runs on a JRE without a compiler
+   */
+  public static CompilationCheck create() {
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new IllegalStateException("No system Java compiler available, a JDK is required");
+    }
+    return new CompilationCheck(compiler, DEFAULT_OPTIONS);
+  }
+
+  /**
+   * Returns a check which passes the given options to the compiler instead of the current options,
+   * e.g. {@code --release 8} or {@code -classpath}.
+   */
+  public CompilationCheck withOptions(String... options) {
+    return new CompilationCheck(compiler, PList.of(options));
+  }
+
+  /** Compiles all sources in a single compilation task and returns the reported diagnostics. */
+  public <K> CompilationResult<K> verify(Iterable<SourceUnit<K>> units) {
+    final long start = System.nanoTime();
+    final List<InMemorySource<K>> sources = new ArrayList<>();
+    for (SourceUnit<K> unit : units) {
+      sources.add(new InMemorySource<>(unit));
+    }
+
+    final DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+    final boolean success;
+    final StandardJavaFileManager standardFileManager =
+        compiler.getStandardFileManager(collector, Locale.ROOT, null);
+    try (DiscardingFileManager fileManager = new DiscardingFileManager(standardFileManager)) {
+      success =
+          compiler
+              .getTask(null, fileManager, collector, options.toArrayList(), null, sources)
+              .call();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    final PList<SourceDiagnostic<K>> diagnostics =
+        PList.fromIter(collector.getDiagnostics()).map(CompilationCheck::toSourceDiagnostic);
+    return new CompilationResult<>(
+        success, diagnostics, Duration.ofNanos(System.nanoTime() - start));
+  }
+
+  private static <K> SourceDiagnostic<K> toSourceDiagnostic(
+      Diagnostic<? extends JavaFileObject> diagnostic) {
+    final Optional<SourceUnit<K>> unit = unitOf(diagnostic.getSource());
+    return new SourceDiagnostic<>(
+        unit.map(SourceUnit::getKey),
+        unit.map(SourceUnit::getName),
+        diagnostic.getKind(),
+        diagnostic.getLineNumber(),
+        diagnostic.getColumnNumber(),
+        diagnostic.getCode(),
+        diagnostic.getMessage(Locale.ROOT));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K> Optional<SourceUnit<K>> unitOf(JavaFileObject source) {
+    if (source instanceof InMemorySource) {
+      return Optional.of(((InMemorySource<K>) source).getUnit());
+    }
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,23 @@
+package io.github.muehmar.codegenerator.verify;
+
+import ch.bluecare.commons.data.PList;
+import java.time.Duration;
+import java.util.Optional;
+import lombok.Value;
+
+/** Outcome of a {@link CompilationCheck} with the diagnostics in the order they were reported. */
+@Value
+public class CompilationResult<K> {
+  boolean success;
+  PList<SourceDiagnostic<K>> diagnostics;
+  Duration duration;
+
+  public PList<SourceDiagnostic<K>> getErrors() {
+    return diagnostics.filter(SourceDiagnostic::isError);
+  }
+
+  /** Returns the diagnostics reported for the source with the given key. */
+  public PList<SourceDiagnostic<K>> diagnosticsOf(K key) {
+    return diagnostics.filter(diagnostic -> diagnostic.getKey().equals(Optional.of(key)));
+  }
+}
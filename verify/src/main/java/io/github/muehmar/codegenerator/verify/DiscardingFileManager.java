@@ -0,0 +1,56 @@
+package io.github.muehmar.codegenerator.verify;
+
+import java.io.OutputStream;
+import java.net.URI;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * File manager reading the classes and sources of the classpath with the delegate but discarding
+ * all output of the compiler instead of writing it to the disk.
+ */
+final class DiscardingFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+  DiscardingFileManager(JavaFileManager fileManager) {
+    super(fileManager);
+  }
+
+  @Override
+  public JavaFileObject getJavaFileForOutput(
+      Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+    final String path = className.replace('.', '/') + kind.extension;
+    return new DiscardedFile(URI.create("mem:///" + path), kind);
+  }
+
+  @Override
+  public FileObject getFileForOutput(
+      Location location, String packageName, String relativeName, FileObject sibling) {
+    final String path =
+        packageName.isEmpty() ? relativeName : packageName.replace('.', '/') + "/" + relativeName;
+    return new DiscardedFile(URI.create("mem:///" + path), JavaFileObject.Kind.OTHER);
+  }
+
+  private static final class DiscardedFile extends SimpleJavaFileObject {
+    private DiscardedFile(URI uri, Kind kind) {
+      super(uri, kind);
+    }
+
+    @Override
+    public OutputStream openOutputStream() {
+      return new OutputStream() {
+        @Override
+        public void write(int b) {
+          // discarded
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+          // discarded
+        }
+      };
+    }
+  }
+}
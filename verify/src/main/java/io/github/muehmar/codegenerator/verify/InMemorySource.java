@@ -0,0 +1,24 @@
+package io.github.muehmar.codegenerator.verify;
+
+import java.net.URI;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/** Source file whose content is rendered from the writer of a {@link SourceUnit}. */
+final class InMemorySource<K> extends SimpleJavaFileObject {
+  private final SourceUnit<K> unit;
+
+  InMemorySource(SourceUnit<K> unit) {
+    super(URI.create("mem:///" + unit.getName()), JavaFileObject.Kind.SOURCE);
+    this.unit = unit;
+  }
+
+  SourceUnit<K> getUnit() {
+    return unit;
+  }
+
+  @Override
+  public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+    return unit.getWriter().asString();
+  }
+}
@@ -0,0 +1,35 @@
+package io.github.muehmar.codegenerator.verify;
+
+import java.util.Optional;
+import javax.tools.Diagnostic;
+import lombok.Value;
+
+/**
+ * Diagnostic reported by the compiler. The key of the {@link SourceUnit} is absent in case the
+ * diagnostic does not belong to a generated source, e.g. a warning about the compiler options.
+ */
+@Value
+public class SourceDiagnostic<K> {
+  Optional<K> key;
+  Optional<String> sourceName;
+  Diagnostic.Kind kind;
+
+  /** Line number starting with one or {@link Diagnostic#NOPOS} if not available. */
+  long line;
+
+  /** Column number starting with one or {@link Diagnostic#NOPOS} if not available. */
+  long column;
+
+  String code;
+  String message;
+
+  public boolean isError() {
+    return kind == Diagnostic.Kind.ERROR;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s:%d:%d: %s: %s", sourceName.orElse("<compiler>"), line, column, kind, message);
+  }
+}
@@ -0,0 +1,22 @@
+package io.github.muehmar.codegenerator.verify;
+
+import io.github.muehmar.codegenerator.writer.Writer;
+import lombok.Value;
+
+/**
+ * Generated source verified by a {@link CompilationCheck}. The key identifies the job which
+ * generated the source, e.g. the input data or a {@link
+ * io.github.muehmar.codegenerator.batch.GenerationJob}, and is used to map the diagnostics back.
+ * The name is the path of the source file relative to a source root separated by slashes, e.g.
+ * {@code com/example/Pojo.java}.
+ */
+@Value
+public class SourceUnit<K> {
+  K key;
+  String name;
+  Writer writer;
+
+  public static <K> SourceUnit<K> of(K key, String name, Writer writer) {
+    return new SourceUnit<>(key, name, writer);
+  }
+}
@@ -0,0 +1,59 @@
+package io.github.muehmar.codegenerator.verify;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.bluecare.commons.data.PList;
+import io.github.muehmar.codegenerator.writer.Writer;
+import java.util.Optional;
+import javax.tools.Diagnostic;
+import org.junit.jupiter.api.Test;
+
+class CompilationCheckTest {
+
+  @Test
+  void verify_when_sourcesReferToEachOther_then_success() {
+    final Writer a =
+        Writer.javaWriter().println("package pkg;").println("public class A { B b; }");
+    final Writer b =
+        Writer.javaWriter().println("package pkg;").println("public class B { A a; }");
+
+    final CompilationResult<String> result =
+        CompilationCheck.create()
+            .verify(
+                PList.of(
+                    SourceUnit.of("job-a", "pkg/A.java", a),
+                    SourceUnit.of("job-b", "pkg/B.java", b)));
+
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(result.getErrors().isEmpty()).isTrue();
+  }
+
+  @Test
+  void verify_when_sourceDoesNotCompile_then_errorMappedToKey() {
+    final Writer valid = Writer.javaWriter().println("package pkg;").println("class A {}");
+    final Writer invalid =
+        Writer.javaWriter()
+            .println("package pkg;")
+            .println("class B {")
+            .tab(1)
+            .println("Missing missing;")
+            .println("}");
+
+    final CompilationResult<String> result =
+        CompilationCheck.create()
+            .verify(
+                PList.of(
+                    SourceUnit.of("job-a", "pkg/A.java", valid),
+                    SourceUnit.of("job-b", "pkg/B.java", invalid)));
+
+    assertThat(result.isSuccess()).isFalse();
+    assertThat(result.diagnosticsOf("job-a").isEmpty()).isTrue();
+    final PList<SourceDiagnostic<String>> errors = result.diagnosticsOf("job-b");
+    assertThat(errors.size()).isEqualTo(1);
+    final SourceDiagnostic<String> error = errors.head();
+    assertThat(error.getKind()).isEqualTo(Diagnostic.Kind.ERROR);
+    assertThat(error.getSourceName()).isEqualTo(Optional.of("pkg/B.java"));
+    assertThat(error.getLine()).isEqualTo(3L);
+    assertThat(error.getMessage()).contains("Missing");
+  }
+}